@@ -0,0 +1,62 @@
+package crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import storage.SiteConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static global.Constants.*;
+
+/**
+ * Saves a handful of live article pages per bundled site config to {@code data/pages/<host>/}, so benchmarks can
+ * run against real markup without touching the network. The first line of each file is the page URL.
+ * <p>
+ * Usage: {@code ArticlePageSampler [pagesPerSite]}
+ */
+public class ArticlePageSampler {
+
+    public static final Path PAGES_DIR = Path.of("data/pages");
+
+    public static void main(String[] args) throws IOException {
+        int perSite = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        List<SiteConfig> configs = SiteConfig.generateConfigsWithRobots(WEBSITE_CONFIG_PATH);
+        for (SiteConfig cfg : configs) {
+            Document index = Jsoup.connect(cfg.baseUrl()).userAgent(USER_AGENT).timeout(10_000).get();
+            Set<String> links = new LinkedHashSet<>();
+            for (String sel : cfg.articleSelectors()) {
+                for (Element a : index.select(sel)) {
+                    String url = a.absUrl("href");
+                    if (!url.isEmpty() && cfg.rules().isAllowed(url)) links.add(url);
+                }
+            }
+
+            Path dir = PAGES_DIR.resolve(hostOf(cfg));
+            Files.createDirectories(dir);
+            int saved = 0;
+            for (String url : links) {
+                if (saved >= perSite) break;
+                try {
+                    String html = Jsoup.connect(url).userAgent(USER_AGENT).timeout(10_000).execute().body();
+                    Files.writeString(dir.resolve(saved + ".html"), url + "\n" + html, StandardCharsets.UTF_8);
+                    saved++;
+                } catch (IOException e) {
+                    System.err.println("Skipping " + url + ": " + e.getMessage());
+                }
+            }
+            System.out.println("Saved " + saved + " pages for " + cfg.baseUrl());
+        }
+    }
+
+    static String hostOf(SiteConfig cfg) {
+        return java.net.URI.create(cfg.baseUrl()).getHost();
+    }
+}
@@ -0,0 +1,104 @@
+package crawler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import storage.Article;
+import storage.SiteConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static global.Constants.*;
+
+/**
+ * Compares building the full DOM and querying it (what {@code Crawler.parse} did) with streaming extraction,
+ * per bundled site, over the pages saved by {@link ArticlePageSampler}. Run with {@code -prof gc} to see the
+ * allocation difference.
+ * <p>
+ * {@code mvn -Pbench package && java -cp "target/classes:$(cat target/bench.classpath)" org.openjdk.jmh.Main
+ * ExtractionBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"www.aljazeera.com", "apnews.com", "www.bbc.com", "edition.cnn.com", "www.euronews.com"})
+    public String host;
+
+    private static final ObjectMapper CONFIG_READER = new ObjectMapper();
+
+    private final List<String> urls = new ArrayList<>();
+    private final List<String> pages = new ArrayList<>();
+    private ArticleExtractor extractor;
+
+    @Setup
+    public void load() throws IOException {
+        // read the configs directly: extraction needs no robots rules and the benchmark must stay offline
+        SiteConfig config = null;
+        try (Stream<Path> files = Files.list(Path.of(WEBSITE_CONFIG_PATH))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).toList()) {
+                SiteConfig c = CONFIG_READER.readValue(file.toFile(), SiteConfig.class);
+                if (ArticlePageSampler.hostOf(c).equals(host)) config = c;
+            }
+        }
+        if (config == null) throw new IllegalStateException("No bundled config for " + host);
+        extractor = new ArticleExtractor(config, host);
+
+        Path dir = ArticlePageSampler.PAGES_DIR.resolve(host);
+        if (!Files.isDirectory(dir)) {
+            throw new IllegalStateException("No saved pages in " + dir + ", run ArticlePageSampler first");
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.sorted().toList()) {
+                String content = Files.readString(file, StandardCharsets.UTF_8);
+                int nl = content.indexOf('\n');
+                urls.add(content.substring(0, nl));
+                pages.add(content.substring(nl + 1));
+            }
+        }
+
+        // only compare the two paths while they agree
+        for (int i = 0; i < pages.size(); i++) {
+            Article dom = extractor.fromDocument(Jsoup.parse(pages.get(i), urls.get(i)), urls.get(i));
+            Article stream;
+            try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(pages.get(i), urls.get(i))) {
+                stream = extractor.fromStream(parser, urls.get(i));
+            }
+            if (!dom.title().equals(stream.title()) || !dom.body().equals(stream.body())
+                    || !dom.publishTime().equals(stream.publishTime())) {
+                throw new IllegalStateException("Streaming extraction differs from the DOM on " + urls.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void dom(Blackhole bh) {
+        for (int i = 0; i < pages.size(); i++) {
+            Article a = extractor.fromDocument(Jsoup.parse(pages.get(i), urls.get(i)), urls.get(i));
+            bh.consume(a);
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) throws IOException {
+        for (int i = 0; i < pages.size(); i++) {
+            try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(pages.get(i), urls.get(i))) {
+                bh.consume(extractor.fromStream(parser, urls.get(i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package main.newsmap.geo;
+
+import javafx.scene.shape.TriangleMesh;
+import main.newsmap.util.CoordinateUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BorderMeshBuilder} with the boxed {@code ArrayList<Float>}/{@code ArrayList<Integer>} builder it
+ * replaced, on the same border ribbons: both get the same vertices and quads in the same order and produce the same
+ * {@link TriangleMesh}, so the difference is only in how the buffers are kept and copied into the mesh. The
+ * ribbons are computed once at setup from synthetic rings of country-outline size, which keeps the benchmark
+ * independent of the world data files.
+ * <p>
+ * {@code mvn -Pbench package && java -cp "target/classes:$(cat target/bench.classpath)" org.openjdk.jmh.Main
+ * BorderMeshBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class BorderMeshBenchmark {
+
+    /** Ring vertices in total; the full-detail world borders have a few hundred thousand. */
+    @Param({"100000", "1000000"})
+    public int vertices;
+
+    private static final int RING_VERTICES = 500;
+    private static final double RADIUS = 300.5;
+    private static final double HALF_WIDTH = 0.2;
+
+    // x, y, z of the upper and lower ribbon vertex of every ring vertex, ring after ring
+    private float[] ribbon;
+    private int[] ringSizes;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        int rings = Math.max(1, vertices / RING_VERTICES);
+        ringSizes = new int[rings];
+        ribbon = new float[rings * RING_VERTICES * 6];
+        double[] pos = new double[3 * RING_VERTICES];
+        int out = 0;
+        for (int r = 0; r < rings; r++) {
+            int n = RING_VERTICES;
+            ringSizes[r] = n;
+            // a jagged loop around a random centre, like a coastline
+            double lat0 = random.nextDouble(-60, 60), lon0 = random.nextDouble(-180, 180);
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n, extent = random.nextDouble(2, 4);
+                CoordinateUtils.latLonToPoint(lat0 + extent * Math.sin(angle), lon0 + extent * Math.cos(angle),
+                        RADIUS, pos, 3 * i);
+            }
+            for (int i = 0; i < n; i++) {
+                int prev = 3 * ((i + n - 1) % n), next = 3 * ((i + 1) % n), cur = 3 * i;
+                double tx = pos[next] - pos[prev], ty = pos[next + 1] - pos[prev + 1], tz = pos[next + 2] - pos[prev + 2];
+                double nx = pos[cur], ny = pos[cur + 1], nz = pos[cur + 2];
+                double sx = ty * nz - tz * ny, sy = tz * nx - tx * nz, sz = tx * ny - ty * nx;
+                double len = Math.sqrt(sx * sx + sy * sy + sz * sz);
+                sx *= HALF_WIDTH / len; sy *= HALF_WIDTH / len; sz *= HALF_WIDTH / len;
+                ribbon[out++] = (float) (nx + sx); ribbon[out++] = (float) (ny + sy); ribbon[out++] = (float) (nz + sz);
+                ribbon[out++] = (float) (nx - sx); ribbon[out++] = (float) (ny - sy); ribbon[out++] = (float) (nz - sz);
+            }
+        }
+    }
+
+    @Benchmark
+    public TriangleMesh primitive() {
+        int total = ribbon.length / 6;
+        BorderMeshBuilder builder = new BorderMeshBuilder(2 * total, total);
+        int v = 0;
+        for (int n : ringSizes) {
+            int firstUp = -1;
+            for (int i = 0; i < n; i++, v += 6) {
+                int up = builder.addPoint(ribbon[v], ribbon[v + 1], ribbon[v + 2]);
+                builder.addPoint(ribbon[v + 3], ribbon[v + 4], ribbon[v + 5]);
+                if (i == 0) firstUp = up;
+                else builder.addQuad(up - 2, up, up + 1, up - 1);
+            }
+            int lastUp = firstUp + 2 * (n - 1);
+            builder.addQuad(lastUp, firstUp, firstUp + 1, lastUp + 1);
+        }
+        return builder.buildMesh();
+    }
+
+    @Benchmark
+    public TriangleMesh boxed() {
+        BoxedMeshBuilder builder = new BoxedMeshBuilder();
+        int v = 0;
+        for (int n : ringSizes) {
+            int firstUp = -1;
+            for (int i = 0; i < n; i++, v += 6) {
+                int up = builder.addPoint(ribbon[v], ribbon[v + 1], ribbon[v + 2]);
+                builder.addPoint(ribbon[v + 3], ribbon[v + 4], ribbon[v + 5]);
+                if (i == 0) firstUp = up;
+                else builder.addQuad(up - 2, up, up + 1, up - 1);
+            }
+            int lastUp = firstUp + 2 * (n - 1);
+            builder.addQuad(lastUp, firstUp, firstUp + 1, lastUp + 1);
+        }
+        return builder.buildMesh();
+    }
+
+    /** The storage of the builder before it moved to primitive buffers, behind the current index-based API. */
+    private static final class BoxedMeshBuilder {
+        private final List<Float> pts = new ArrayList<>();
+        private final List<Integer> faces = new ArrayList<>();
+
+        int addPoint(float x, float y, float z) {
+            int idx = pts.size() / 3;
+            pts.add(x);
+            pts.add(y);
+            pts.add(z);
+            return idx;
+        }
+
+        void addQuad(int aUp, int bUp, int bDn, int aDn) {
+            faces.add(aUp); faces.add(0);
+            faces.add(bUp); faces.add(0);
+            faces.add(bDn); faces.add(0);
+
+            faces.add(aUp); faces.add(0);
+            faces.add(bDn); faces.add(0);
+            faces.add(aDn); faces.add(0);
+        }
+
+        TriangleMesh buildMesh() {
+            TriangleMesh mesh = new TriangleMesh();
+
+            float[] pointsArray = new float[pts.size()];
+            for (int i = 0; i < pts.size(); i++) {
+                pointsArray[i] = pts.get(i);
+            }
+            mesh.getPoints().addAll(pointsArray);
+
+            mesh.getTexCoords().addAll(0f, 0f);
+
+            int[] facesArray = new int[faces.size()];
+            for (int i = 0; i < faces.size(); i++) {
+                facesArray[i] = faces.get(i);
+            }
+            mesh.getFaces().addAll(facesArray);
+
+            return mesh;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package storage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static global.Constants.timeStampFormatter;
+
+/**
+ * Compares the Jackson JSONL form of an {@link Article} with {@link ArticleCodec} records: encoding, decoding the
+ * whole article, and reading only the header fields a store scan filters on. The synthetic articles have the shape
+ * of crawled news (sha256 id, ~80 char title, a few KB of body); the average encoded size of both forms is printed
+ * at setup.
+ * <p>
+ * {@code mvn -Pbench package && java -cp "target/classes:$(cat target/bench.classpath)" org.openjdk.jmh.Main
+ * ArticleCodecBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArticleCodecBenchmark {
+
+    @Param({"2000", "8000"})
+    public int bodyChars;
+
+    private static final int ARTICLES = 256;
+
+    private final SourceDictionary sources = SourceDictionary.inMemory();
+    private final Article[] articles = new Article[ARTICLES];
+    private final byte[][] json = new byte[ARTICLES][];
+    private final byte[][] binary = new byte[ARTICLES][];
+    private final ArticleView view = new ArticleView();
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] hosts = {"www.bbc.com", "apnews.com", "edition.cnn.com", "www.aljazeera.com", "www.euronews.com"};
+        Instant now = Instant.now();
+        long jsonBytes = 0, binaryBytes = 0;
+        for (int i = 0; i < ARTICLES; i++) {
+            String host = hosts[i % hosts.length];
+            Instant published = now.minusSeconds(random.nextInt(86_400));
+            articles[i] = new Article(
+                    org.apache.commons.codec.digest.DigestUtils.sha256Hex("article-" + i),
+                    "https://" + host + "/news/2026/" + i + "/" + words(random, 6, "-"),
+                    words(random, 12, " "),
+                    text(random, bodyChars),
+                    host,
+                    timeStampFormatter.format(published),
+                    timeStampFormatter.format(published.plusSeconds(random.nextInt(3_600))));
+            json[i] = Article.JSONL_WRITER.writeValueAsBytes(articles[i]);
+            binary[i] = ArticleCodec.encode(articles[i], sources);
+            jsonBytes += json[i].length;
+            binaryBytes += binary[i].length;
+        }
+        System.out.printf("%nAverage record: JSONL %d bytes, binary %d bytes%n",
+                jsonBytes / ARTICLES, binaryBytes / ARTICLES);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % ARTICLES;
+        return next;
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return Article.JSONL_WRITER.writeValueAsBytes(articles[nextIndex()]);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() throws IOException {
+        return ArticleCodec.encode(articles[nextIndex()], sources);
+    }
+
+    @Benchmark
+    public Article decodeJson() throws IOException {
+        return Article.MAPPER.readValue(json[nextIndex()], Article.class);
+    }
+
+    @Benchmark
+    public Article decodeBinary() {
+        return view.reset(ByteBuffer.wrap(binary[nextIndex()]), 0).toArticle(sources);
+    }
+
+    /** What a time-range scan needs: the crawl time of every record, and the title of the ones that match. */
+    @Benchmark
+    public void headerJson(Blackhole bh) throws IOException {
+        Article a = Article.MAPPER.readValue(json[nextIndex()], Article.class);
+        bh.consume(Article.epochMillis(a.crawledAt(), 0));
+        bh.consume(a.title());
+    }
+
+    @Benchmark
+    public void headerBinary(Blackhole bh) {
+        view.reset(ByteBuffer.wrap(binary[nextIndex()]), 0);
+        bh.consume(view.crawledMillis());
+        bh.consume(view.title());
+    }
+
+    private static String words(SplittableRandom random, int count, String separator) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(separator);
+            sb.append(word(random));
+        }
+        return sb.toString();
+    }
+
+    private static String text(SplittableRandom random, int chars) {
+        StringBuilder sb = new StringBuilder(chars + 16);
+        while (sb.length() < chars) {
+            sb.append(word(random)).append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        return sb.toString();
+    }
+
+    private static String word(SplittableRandom random) {
+        char[] w = new char[3 + random.nextInt(7)];
+        for (int i = 0; i < w.length; i++) w[i] = (char) ('a' + random.nextInt(26));
+        return new String(w);
+    }
+}
@@ -1,35 +1,53 @@
-import h5py
+import json
+from pathlib import Path
+
 import numpy as np
+import pyarrow.parquet as pq
 import umap
 import matplotlib.pyplot as plt
-from tqdm import tqdm
 import plotly.graph_objects as go
 
-H5_PATH = "embeddings/articles.h5"
-
-
-def load_embeddings(h5_path):
-    print("[LOAD] Reading embeddings from HDF5…")
-
-    vectors = []
-    ids = []
-    titles = []
-
-    with h5py.File(h5_path, "r") as h5f:
-        for dataset_id in tqdm(h5f.keys()):
-            # Load embedding vector
-            vec = np.array(h5f[dataset_id])
-            vectors.append(vec)
-
-            # Store dataset ID
-            ids.append(dataset_id)
-
-            # Load title attribute if exists, otherwise empty string
-            title = h5f[dataset_id].attrs.get("title", "")
-            titles.append(title)
-
-    vectors = np.vstack(vectors)
-    return vectors, ids, titles
+# written by the crawler's embedder (storage.VectorStore): fixed-width id and vector columns, row i for the same article
+EMBEDDING_DIR = Path("../data/embeddings")
+ARTICLE_DIR = Path("../data/articles")
+HEADER_BYTES = 16
+
+
+def load_embeddings(embedding_dir):
+    print("[LOAD] Mapping embeddings…")
+
+    vector_file = embedding_dir / "vectors.f32"
+    magic, version, dim, _ = np.fromfile(vector_file, dtype="<i4", count=4)
+    if magic != 0x56454331:
+        raise ValueError(f"Not a vector file: {vector_file}")
+
+    # the crawler may be appending: only map whole rows, and only rows whose id is written too
+    ids_bytes = (embedding_dir / "ids.bin").read_bytes()
+    n = min((vector_file.stat().st_size - HEADER_BYTES) // (4 * dim), len(ids_bytes) // 32)
+    vectors = np.memmap(vector_file, dtype="<f4", mode="r", offset=HEADER_BYTES, shape=(n, dim))
+    raw_ids = np.frombuffer(ids_bytes, dtype=np.uint8, count=n * 32).reshape(n, 32)
+
+    # an article embedded again after it changed has a newer row; only the last row of each id is current
+    all_ids = [row.tobytes().hex() for row in raw_ids]
+    latest = sorted({article_id: row for row, article_id in enumerate(all_ids)}.values())
+    ids = [all_ids[row] for row in latest]
+    titles_by_id = load_titles(ARTICLE_DIR)
+    titles = [titles_by_id.get(i, "") for i in ids]
+    return np.asarray(vectors[latest]), ids, titles
+
+
+def load_titles(base):
+    titles = {}
+    for jsonl_file in base.glob("*.jsonl"):
+        with open(jsonl_file, "r", encoding="utf-8") as f:
+            for line in f:
+                if line.strip():
+                    article = json.loads(line)
+                    titles[article.get("id")] = article.get("title", "")
+    for parquet_file in base.glob("*.parquet"):
+        table = pq.read_table(parquet_file, columns=["id", "title"])
+        titles.update(zip(table.column("id").to_pylist(), table.column("title").to_pylist()))
+    return titles
 
 
 def run_umap(vectors):
@@ -108,7 +126,7 @@ def plot_3d_interactive(points, ids, titles):
 
 
 def main():
-    vectors, ids, titles = load_embeddings("embeddings/articles.h5")
+    vectors, ids, titles = load_embeddings(EMBEDDING_DIR)
     points3d = run_umap(vectors)
     plot_3d_interactive(points3d, ids, titles)
 
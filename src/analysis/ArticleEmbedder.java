@@ -0,0 +1,176 @@
+package analysis;
+
+import storage.Article;
+import storage.VectorStore;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static global.Constants.*;
+
+/**
+ * Embeds saved articles in the background and appends their vectors to a {@link VectorStore}.
+ * <p>
+ * Articles are handed over with {@link #submit} as the crawler writes them and wait in a bounded queue; a single
+ * thread takes them off in batches of up to {@code batchSize}, waiting at most {@code maxWait} for a batch to fill
+ * so a trickle of articles is still embedded within about that time. The queue blocks when full, so an embedder
+ * that falls behind slows down the write stage feeding it rather than holding every pending article in memory.
+ * A submitted article is always embedded, so an article saved again after it changed gets a new vector;
+ * {@link #backfill} skips articles that have one, which makes it cheap after a restart.
+ */
+public final class ArticleEmbedder implements AutoCloseable {
+
+    private static final Article POISON = new Article(null, null, null, null, null, null, null);
+
+    private final EmbeddingModel model;
+    private final VectorStore store;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Article> queue;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong embedded = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public ArticleEmbedder(EmbeddingModel model, VectorStore store, int batchSize, Duration maxWait, int queueCapacity) {
+        if (batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Embedding batch size and queue capacity must be >= 1.");
+        }
+        if (model.dimension() != store.dimension()) {
+            throw new IllegalArgumentException("Model vectors have dimension " + model.dimension()
+                    + ", the store holds " + store.dimension());
+        }
+        this.model = model;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.worker = new Thread(this::work, "Embedder");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Embedder sized from the defaults in {@link global.Constants}. */
+    public static ArticleEmbedder withDefaults(EmbeddingModel model, VectorStore store) {
+        return new ArticleEmbedder(model, store, EMBEDDING_BATCH_SIZE, EMBEDDING_BATCH_WAIT, EMBEDDING_QUEUE_CAPACITY);
+    }
+
+    /** Queues {@code article} for embedding, replacing any vector it has; blocks while the queue is full. */
+    public void submit(Article article) throws InterruptedException {
+        if (closed) return;
+        queue.put(article);
+    }
+
+    /** Queues every article of {@code articles} that has no vector yet; returns how many were queued. */
+    public int backfill(Collection<Article> articles) throws InterruptedException {
+        int queued = 0;
+        for (Article article : articles) {
+            if (closed) break;
+            if (store.contains(article.id())) continue;
+            queue.put(article);
+            queued++;
+        }
+        return queued;
+    }
+
+    /** Embeds everything already queued, then stops the worker and closes the model. The store stays open. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            // a dead worker never makes room in a full queue, so keep checking on it instead of blocking in put
+            while (!queue.offer(POISON, 1, TimeUnit.SECONDS)) {
+                if (!worker.isAlive()) break;
+            }
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            model.close();
+        } catch (IOException e) {
+            System.err.println(EMBEDDING_PREFIX + "Failed to close embedding model: " + e.getMessage());
+        }
+    }
+
+    /** One line with throughput, batching, worker utilisation and queue depth. */
+    public String report() {
+        double elapsed = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        long n = embedded.get();
+        long b = batches.get();
+        return String.format("embed[q=%d %.1f/s batch=%.1f avg=%.1fms/batch busy=%.0f%% fail=%d stored=%d]",
+                queue.size(), n / elapsed, b == 0 ? 0.0 : (double) n / b,
+                b == 0 ? 0.0 : busyNanos.get() / 1e6 / b, 100 * busyNanos.get() / 1e9 / elapsed,
+                failures.get(), store.size());
+    }
+
+    private void work() {
+        List<Article> batch = new ArrayList<>(batchSize);
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                Article first = queue.take();
+                if (first == POISON) break;
+                batch.add(first);
+
+                // give a trickle of articles a moment to fill the batch, but never hold one back longer than that
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < batchSize) {
+                    Article next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    if (next == POISON) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                embedBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void embedBatch(List<Article> batch) {
+        long start = System.nanoTime();
+        try {
+            List<String> texts = new ArrayList<>(batch.size());
+            String[] ids = new String[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                Article a = batch.get(i);
+                ids[i] = a.id();
+                texts.add(text(a));
+            }
+            float[][] vectors = model.embed(texts);
+            embedded.addAndGet(store.append(ids, vectors));
+        } catch (Throwable e) {
+            // an Error from native inference must not kill the only worker, or submit() would block for good
+            failures.addAndGet(batch.size());
+            System.err.println(EMBEDDING_PREFIX + "Failed to embed " + batch.size() + " articles: " + e.getMessage());
+        } finally {
+            batches.incrementAndGet();
+            busyNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // the title leads, so it survives truncation of long bodies to the model's token limit
+    private static String text(Article a) {
+        String title = a.title() == null ? "" : a.title();
+        String body = a.body() == null ? "" : a.body();
+        return title.isEmpty() ? body : title + "\n" + body;
+    }
+}
@@ -0,0 +1,18 @@
+package analysis;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Turns texts into fixed-size vectors, a batch at a time. Implementations need not be thread-safe. */
+public interface EmbeddingModel extends AutoCloseable {
+
+    /** Length of every vector {@link #embed} returns. */
+    int dimension();
+
+    /** One L2-normalized vector per text, in order. */
+    float[][] embed(List<String> texts) throws Exception;
+
+    /** Releases the model's native resources. */
+    @Override
+    void close() throws IOException;
+}
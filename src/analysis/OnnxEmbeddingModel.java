@@ -0,0 +1,176 @@
+package analysis;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sentence-embedding model run in-process with ONNX Runtime on the CPU.
+ * <p>
+ * Expects a directory holding {@code model.onnx}, a BERT-style encoder taking {@code input_ids},
+ * {@code attention_mask} and optionally {@code token_type_ids}, and the {@code vocab.txt} of its WordPiece tokenizer
+ * (for instance {@code sentence-transformers/all-MiniLM-L6-v2} exported with Hugging Face Optimum). A batch is padded
+ * to its longest text only. If the model's first output is the per-token hidden state, the vectors are the mean over
+ * the non-padding tokens; a model that already outputs one vector per text is used as is. Either way the result is
+ * L2-normalized, so the dot product of two vectors is their cosine similarity.
+ */
+public final class OnnxEmbeddingModel implements EmbeddingModel {
+
+    private static final String MODEL_FILE = "model.onnx";
+    private static final String VOCAB_FILE = "vocab.txt";
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final WordPieceTokenizer tokenizer;
+    private final int maxTokens;
+    private final boolean wantsTokenTypes;
+    private final int dimension;
+
+    private OnnxEmbeddingModel(OrtEnvironment env, OrtSession session, WordPieceTokenizer tokenizer, int maxTokens)
+            throws OrtException {
+        this.env = env;
+        this.session = session;
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.wantsTokenTypes = session.getInputNames().contains("token_type_ids");
+        // run one text to learn the output width instead of trusting the declared (often symbolic) shape
+        this.dimension = run(List.of(""))[0].length;
+    }
+
+    /**
+     * Loads the model in {@code dir}. Inference uses {@code threads} intra-op threads and sees at most
+     * {@code maxTokens} tokens per text.
+     */
+    public static OnnxEmbeddingModel load(Path dir, int maxTokens, int threads) throws IOException {
+        Path model = dir.resolve(MODEL_FILE);
+        Path vocab = dir.resolve(VOCAB_FILE);
+        if (!Files.isRegularFile(model) || !Files.isRegularFile(vocab)) {
+            throw new IOException("Expected " + MODEL_FILE + " and " + VOCAB_FILE + " in " + dir);
+        }
+        WordPieceTokenizer tokenizer = WordPieceTokenizer.load(vocab);
+
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            options.setIntraOpNumThreads(threads);
+            OrtSession session = env.createSession(model.toString(), options);
+            try {
+                return new OnnxEmbeddingModel(env, session, tokenizer, maxTokens);
+            } catch (OrtException | RuntimeException e) {
+                session.close();
+                throw e;
+            }
+        } catch (OrtException e) {
+            throw new IOException("Failed to load embedding model " + model + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[][] embed(List<String> texts) throws OrtException {
+        return run(texts);
+    }
+
+    private float[][] run(List<String> texts) throws OrtException {
+        int batch = texts.size();
+        int[][] tokens = new int[batch][];
+        int seq = 1;
+        for (int i = 0; i < batch; i++) {
+            tokens[i] = tokenizer.encode(texts.get(i), maxTokens);
+            seq = Math.max(seq, tokens[i].length);
+        }
+
+        long[] ids = new long[batch * seq];
+        long[] mask = new long[batch * seq];
+        Arrays.fill(ids, tokenizer.padId());
+        for (int i = 0; i < batch; i++) {
+            for (int t = 0; t < tokens[i].length; t++) {
+                ids[i * seq + t] = tokens[i][t];
+                mask[i * seq + t] = 1;
+            }
+        }
+
+        long[] shape = {batch, seq};
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(env, LongBuffer.wrap(ids), shape));
+            inputs.put("attention_mask", OnnxTensor.createTensor(env, LongBuffer.wrap(mask), shape));
+            if (wantsTokenTypes) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(env, LongBuffer.wrap(new long[batch * seq]), shape));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                OnnxValue output = result.get(0);
+                if (!(output instanceof OnnxTensor tensor)) {
+                    throw new IllegalStateException("Embedding model output is not a tensor");
+                }
+                long[] outShape = tensor.getInfo().getShape();
+                FloatBuffer values = tensor.getFloatBuffer();
+                return outShape.length == 3
+                        ? meanPool(values, mask, batch, seq, (int) outShape[2])
+                        : rows(values, batch, (int) outShape[outShape.length - 1]);
+            }
+        } finally {
+            for (OnnxTensor t : inputs.values()) t.close();
+        }
+    }
+
+    /** Averages the hidden states of each text's real tokens, then normalizes. */
+    private static float[][] meanPool(FloatBuffer hidden, long[] mask, int batch, int seq, int dim) {
+        float[][] out = new float[batch][dim];
+        for (int i = 0; i < batch; i++) {
+            float[] v = out[i];
+            int count = 0;
+            for (int t = 0; t < seq; t++) {
+                if (mask[i * seq + t] == 0) continue;
+                int base = (i * seq + t) * dim;
+                for (int d = 0; d < dim; d++) v[d] += hidden.get(base + d);
+                count++;
+            }
+            for (int d = 0; d < dim; d++) v[d] /= Math.max(1, count);
+            normalize(v);
+        }
+        return out;
+    }
+
+    private static float[][] rows(FloatBuffer values, int batch, int dim) {
+        float[][] out = new float[batch][dim];
+        for (int i = 0; i < batch; i++) {
+            values.get(i * dim, out[i]);
+            normalize(out[i]);
+        }
+        return out;
+    }
+
+    private static void normalize(float[] v) {
+        double sum = 0;
+        for (float x : v) sum += x * x;
+        if (sum == 0) return;
+        float inv = (float) (1 / Math.sqrt(sum));
+        for (int d = 0; d < v.length; d++) v[d] *= inv;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            throw new IOException("Failed to close embedding model: " + e.getMessage(), e);
+        }
+    }
+}
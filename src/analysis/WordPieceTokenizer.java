@@ -0,0 +1,155 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * BERT's uncased WordPiece tokenizer, as used by the common sentence-embedding models (MiniLM, MPNet, BGE ...).
+ * <p>
+ * Text is cleaned of control characters, lower-cased and stripped of accents, split on whitespace and around
+ * punctuation and CJK ideographs, and every word is then broken greedily into the longest pieces found in the
+ * vocabulary, continuation pieces carrying a {@code ##} prefix. A word that cannot be covered becomes {@code [UNK]}.
+ * The result is wrapped in {@code [CLS]} ... {@code [SEP]} like the models were trained on.
+ */
+public final class WordPieceTokenizer {
+
+    private static final int MAX_WORD_CHARS = 100;
+
+    private final Map<String, Integer> vocab;
+    private final int cls;
+    private final int sep;
+    private final int unk;
+    private final int pad;
+
+    private WordPieceTokenizer(Map<String, Integer> vocab) throws IOException {
+        this.vocab = vocab;
+        this.cls = special(vocab, "[CLS]");
+        this.sep = special(vocab, "[SEP]");
+        this.unk = special(vocab, "[UNK]");
+        this.pad = special(vocab, "[PAD]");
+    }
+
+    /** Loads a {@code vocab.txt} with one token per line, the line number being its id. */
+    public static WordPieceTokenizer load(Path vocabFile) throws IOException {
+        List<String> lines = Files.readAllLines(vocabFile, StandardCharsets.UTF_8);
+        Map<String, Integer> vocab = new HashMap<>(lines.size() * 2);
+        for (int i = 0; i < lines.size(); i++) {
+            vocab.putIfAbsent(lines.get(i), i);
+        }
+        return new WordPieceTokenizer(vocab);
+    }
+
+    private static int special(Map<String, Integer> vocab, String token) throws IOException {
+        Integer id = vocab.get(token);
+        if (id == null) throw new IOException("Vocabulary has no " + token + " token");
+        return id;
+    }
+
+    /** Token ids of {@code text}, at most {@code maxTokens} of them including {@code [CLS]} and {@code [SEP]}. */
+    public int[] encode(String text, int maxTokens) {
+        if (maxTokens < 2) throw new IllegalArgumentException("maxTokens must leave room for [CLS] and [SEP]");
+        int[] ids = new int[maxTokens];
+        int n = 0;
+        ids[n++] = cls;
+
+        String normalized = normalize(text == null ? "" : text);
+        int len = normalized.length();
+        int i = 0;
+        while (i < len && n < maxTokens - 1) {
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            if (!isSeparateChar(c)) {
+                while (end < len) {
+                    char d = normalized.charAt(end);
+                    if (Character.isWhitespace(d) || isSeparateChar(d)) break;
+                    end++;
+                }
+            }
+            n = wordPieces(normalized, i, end, ids, n, maxTokens - 1);
+            i = end;
+        }
+
+        ids[n++] = sep;
+        return n == maxTokens ? ids : Arrays.copyOf(ids, n);
+    }
+
+    /** Id used to pad shorter sequences of a batch. */
+    public int padId() {
+        return pad;
+    }
+
+    /** Appends the pieces of {@code text[from, to)} to {@code ids}, stopping at {@code limit}; returns the new count. */
+    private int wordPieces(String text, int from, int to, int[] ids, int n, int limit) {
+        if (to - from > MAX_WORD_CHARS) {
+            ids[n++] = unk;
+            return n;
+        }
+        int start = from;
+        int mark = n;
+        while (start < to) {
+            int end = to;
+            Integer id = null;
+            while (start < end) {
+                String piece = start == from ? text.substring(start, end) : "##" + text.substring(start, end);
+                id = vocab.get(piece);
+                if (id != null) break;
+                end--;
+            }
+            if (id == null) {
+                // the whole word becomes one unknown token, dropping pieces already added for it
+                n = mark;
+                ids[n++] = unk;
+                return n;
+            }
+            if (n == limit) return n;
+            ids[n++] = id;
+            start = end;
+        }
+        return n;
+    }
+
+    /** Lower-cases, strips accents and control characters, and maps every kind of whitespace to a space. */
+    private static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            int type = Character.getType(c);
+            if (type == Character.NON_SPACING_MARK) continue;
+            if (c == 0 || c == 0xFFFD) continue;
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                sb.append(' ');
+            } else if (type == Character.CONTROL || type == Character.FORMAT) {
+                continue;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Punctuation and CJK ideographs are tokens of their own. */
+    private static boolean isSeparateChar(char c) {
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+            return true;
+        }
+        return switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+        };
+    }
+}
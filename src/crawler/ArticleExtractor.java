@@ -0,0 +1,186 @@
+package crawler;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import storage.Article;
+import storage.SiteConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static crawler.CrawlerUtils.*;
+import static global.Constants.*;
+
+/**
+ * Turns an article page into an {@link Article} using a site's title, time and body selectors.
+ * <p>
+ * {@link #fromDocument} queries a fully built DOM. {@link #fromStream} evaluates the same selectors on each element
+ * as the {@link StreamParser} completes it, keeps the text it needs and removes everything it can no longer need,
+ * so a large page never sits in memory as a whole tree. An element is dropped once it is complete and no open
+ * ancestor carries a tag any selector could end on; script, style and iframe subtrees are always dropped since
+ * {@link Element#text()} ignores them anyway. Elements complete children first, so a match nested inside another
+ * match is seen before its ancestor: it stays attached until the ancestor completes, and the ancestor's text is put
+ * in front of it, giving the document order and the repeated text {@code doc.select(...).text()} gives. Selectors
+ * with sibling combinators or positional and content pseudo-classes depend on nodes that pruning would remove, so
+ * sites using them are streamed without pruning.
+ */
+public final class ArticleExtractor {
+
+    private static final Set<String> ALWAYS_DROP = Set.of(
+            "script", "style", "iframe");
+
+    // sibling combinators and pseudo-classes that look at siblings or content
+    private static final Pattern UNPRUNABLE = Pattern.compile("[+~]|:(nth|first|last|only|has|contains|matches|containsOwn|matchesOwn)");
+    // tag of the right-most simple selector of each comma-separated alternative
+    private static final Pattern LAST_TAG = Pattern.compile("(?:^|[\\s>+~])([a-zA-Z][\\w-]*)[^\\s>+~]*$");
+
+    private final SiteConfig config;
+    private final String source;
+    private final Evaluator title;
+    private final Evaluator time;
+    private final Evaluator body;
+    private final Set<String> anchorTags;   // tags a selector match can have; null if any tag can match
+    private final boolean prune;
+
+    public ArticleExtractor(SiteConfig config, String host) {
+        this.config = config;
+        this.source = host == null ? "unknown" : host;
+        this.title = QueryParser.parse(config.articleTitle());
+        this.time = QueryParser.parse(config.articleTime());
+        this.body = QueryParser.parse(config.articleBody());
+
+        Set<String> tags = new HashSet<>();
+        boolean anyTag = false;
+        for (String sel : List.of(config.articleTitle(), config.articleTime(), config.articleBody())) {
+            for (String alt : sel.split(",")) {
+                Matcher m = LAST_TAG.matcher(alt.trim());
+                if (m.find()) tags.add(m.group(1).toLowerCase(Locale.ROOT));
+                else anyTag = true;
+            }
+        }
+        this.anchorTags = anyTag ? null : tags;
+        this.prune = !UNPRUNABLE.matcher(config.articleTitle() + config.articleTime() + config.articleBody()).find();
+    }
+
+    /** Extracts from a complete DOM; the reference behavior the streaming path matches. */
+    public Article fromDocument(Document doc, String url) {
+        String titleText = doc.select(config.articleTitle()).text();
+        Element timeEl = doc.select(config.articleTime()).first();
+        String bodyText = doc.select(config.articleBody()).text();
+        return build(url, titleText, extractTimeAttribute(timeEl), bodyText);
+    }
+
+    /** Extracts while {@code parser} streams the page, pruning subtrees that can no longer match. */
+    public Article fromStream(StreamParser parser, String url) throws IOException {
+        List<Match> titleParts = new ArrayList<>();
+        List<Match> bodyParts = new ArrayList<>();
+        Element timeEl = null;          // null once no ancestor of the time match can match
+        String timeValue = null;
+
+        try {
+            Iterator<Element> it = parser.iterator();
+            while (it.hasNext()) {
+                Element el = it.next();
+                boolean captured = false;
+
+                if (el.is(title)) {
+                    addInDocumentOrder(titleParts, el);
+                    captured = true;
+                }
+                if (el.is(body)) {
+                    addInDocumentOrder(bodyParts, el);
+                    captured = true;
+                }
+                // a later match precedes the current one in the document only if it is its ancestor
+                if (el.is(time) && (timeValue == null || (timeEl != null && isAncestor(el, timeEl)))) {
+                    timeEl = el;
+                    timeValue = extractTimeAttribute(el);
+                    captured = true;
+                }
+
+                if (prune && !insideAnchor(el)) {
+                    // nothing around el can match any more, so its matches are final and need no element
+                    release(titleParts, el);
+                    release(bodyParts, el);
+                    if (timeEl != null && (timeEl == el || isAncestor(el, timeEl))) timeEl = null;
+                    el.remove();
+                } else if (!captured && ALWAYS_DROP.contains(el.normalName())) {
+                    el.remove();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return build(url, joinText(titleParts), timeValue == null ? "" : timeValue, joinText(bodyParts));
+    }
+
+    /** A captured match; {@code el} is kept while an ancestor could still match and be ordered in front of it. */
+    private record Match(Element el, String text) {}
+
+    // matches complete in post-order, so the ones nested inside el are the trailing run of parts
+    private static void addInDocumentOrder(List<Match> parts, Element el) {
+        int at = parts.size();
+        while (at > 0 && parts.get(at - 1).el() != null && isAncestor(el, parts.get(at - 1).el())) at--;
+        parts.add(at, new Match(el, el.text()));
+    }
+
+    private static void release(List<Match> parts, Element el) {
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            Match part = parts.get(i);
+            if (part.el() == null || (part.el() != el && !isAncestor(el, part.el()))) break;
+            parts.set(i, new Match(null, part.text()));
+        }
+    }
+
+    private static boolean isAncestor(Element ancestor, Element el) {
+        for (Element p = el.parent(); p != null; p = p.parent()) {
+            if (p == ancestor) return true;
+        }
+        return false;
+    }
+
+    private boolean insideAnchor(Element el) {
+        if (anchorTags == null) return true;
+        for (Element p = el.parent(); p != null; p = p.parent()) {
+            if (anchorTags.contains(p.normalName())) return true;
+        }
+        return false;
+    }
+
+    // Elements.text() joins the texts of all matches with single spaces, empty ones included
+    private static String joinText(List<Match> parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(parts.get(i).text());
+        }
+        return sb.toString();
+    }
+
+    private Article build(String url, String titleText, String time, String bodyText) {
+        Instant publishedAt = parseSmartTimestamp(time);
+        return new Article(
+                DigestUtils.sha256Hex(url),
+                url,
+                titleText,
+                bodyText,
+                source,
+                timeStampFormatter.format(publishedAt),
+                timeStampFormatter.format(Instant.now())
+        );
+    }
+}
@@ -0,0 +1,171 @@
+package crawler;
+
+import org.jetbrains.annotations.Nullable;
+import storage.CrawlState;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static crawler.CrawlerBuilder.builder_print;
+import static global.Constants.*;
+
+/**
+ * Long-running crawl that never drains its frontier.
+ * <p>
+ * Crawlers, the crawl state and the JDK's keep-alive connections all stay alive between visits. The seen-URL set is
+ * cleared every {@link global.Constants#ARTICLE_RECHECK_INTERVAL}: from then on the crawl state alone keeps recent
+ * articles from being fetched again, and older ones get their conditional GET when a topic page links them again.
+ * Every topic page is revisited on its own schedule: a visit that yields new articles halves the topic's interval,
+ * a visit that yields none stretches it by half, within {@link global.Constants#DAEMON_MIN_TOPIC_INTERVAL} and
+ * {@link global.Constants#DAEMON_MAX_TOPIC_INTERVAL}. Busy sections are therefore polled every minute or so while
+ * quiet ones back off to once an hour. Batch files are flushed every
+ * {@link global.Constants#DAEMON_FLUSH_INTERVAL}, so saved articles reach disk without waiting for shutdown.
+ */
+public class CrawlDaemon implements CrawlListener {
+
+    private static final class TopicSchedule {
+        final CrawlTask task;
+        volatile Duration interval = DAEMON_INITIAL_TOPIC_INTERVAL;
+
+        TopicSchedule(CrawlTask task) {
+            this.task = new CrawlTask(task.crawler(), task.url(), task.depth(), task.kind());
+        }
+
+        synchronized Duration record(int found) {
+            interval = found > 0 ? interval.dividedBy(2) : interval.multipliedBy(3).dividedBy(2);
+            if (interval.compareTo(DAEMON_MIN_TOPIC_INTERVAL) < 0) interval = DAEMON_MIN_TOPIC_INTERVAL;
+            if (interval.compareTo(DAEMON_MAX_TOPIC_INTERVAL) > 0) interval = DAEMON_MAX_TOPIC_INTERVAL;
+            // +-10% jitter so topics discovered together don't stay in lockstep
+            double jitter = 0.9 + 0.2 * ThreadLocalRandom.current().nextDouble();
+            return Duration.ofMillis((long) (interval.toMillis() * jitter));
+        }
+    }
+
+    private final List<Crawler> crawlers;
+    private final SeenUrlSet seenArticles;
+    private final CrawlState crawlState;
+    @Nullable
+    private final CrawlPipeline pipeline;
+    private final int maxInFlight;
+    private final CrawlFrontier frontier;
+    private final Map<String, TopicSchedule> topics = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "CrawlDaemonScheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    @Nullable
+    private Runnable afterStop;
+
+    /** A null {@code pipeline} means every crawler runs its own. */
+    public CrawlDaemon(List<Crawler> crawlers, SeenUrlSet seenArticles, CrawlState crawlState,
+                       @Nullable CrawlPipeline pipeline, int maxInFlight, int perHostConcurrency) {
+        this.crawlers = crawlers;
+        this.seenArticles = seenArticles;
+        this.crawlState = crawlState;
+        this.pipeline = pipeline;
+        this.maxInFlight = maxInFlight;
+        this.frontier = new CrawlFrontier(perHostConcurrency, true);
+    }
+
+    /**
+     * Cleanup of resources the crawlers share but the daemon does not own, such as the article store. It runs at the
+     * end of {@link #run()}, after the crawlers are closed and before {@link #stop()} returns, so a shutdown hook
+     * calling {@code stop()} does not let the JVM halt halfway through it.
+     */
+    public void setAfterStop(@Nullable Runnable afterStop) {
+        this.afterStop = afterStop;
+    }
+
+    /** Crawls until {@link #stop()} is called; then flushes and closes the crawlers and the crawl state. */
+    public void run() throws InterruptedException {
+        builder_print("Starting crawl daemon for " + crawlers.size() + " sites with up to " + maxInFlight
+                + " fetches in flight.");
+        try {
+            for (Crawler crawler : crawlers) {
+                crawler.setListener(this);
+                frontier.offer(crawler.seedTask());
+            }
+
+            long flushMs = DAEMON_FLUSH_INTERVAL.toMillis();
+            scheduler.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+            long statusMs = DAEMON_STATUS_INTERVAL.toMillis();
+            scheduler.scheduleWithFixedDelay(this::logStatus, statusMs, statusMs, TimeUnit.MILLISECONDS);
+            long recheckMs = ARTICLE_RECHECK_INTERVAL.toMillis();
+            scheduler.scheduleWithFixedDelay(seenArticles::clear, recheckMs, recheckMs, TimeUnit.MILLISECONDS);
+
+            try (ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor()) {
+                frontier.drainConcurrently(fetchers, maxInFlight);
+            }
+        } finally {
+            scheduler.shutdownNow();
+            if (pipeline != null) pipeline.close();
+            for (Crawler crawler : crawlers) {
+                crawler.close();
+            }
+            try {
+                crawlState.close();
+            } catch (IOException e) {
+                builder_print("Failed to save crawl state: " + e.getMessage());
+            }
+            try {
+                if (afterStop != null) afterStop.run();
+            } finally {
+                builder_print(">>> Crawl daemon stopped.");
+                stopped.countDown();
+            }
+        }
+    }
+
+    /** Stops handing out work and waits (bounded) for {@link #run()} to finish its cleanup. */
+    public void stop() {
+        frontier.close();
+        try {
+            stopped.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onTopicVisited(CrawlTask topic, int newArticles) {
+        TopicSchedule schedule = topics.computeIfAbsent(topic.url(), u -> new TopicSchedule(topic));
+        Duration next = schedule.record(newArticles);
+        try {
+            scheduler.schedule(() -> frontier.offer(schedule.task), next.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // shutting down
+        }
+    }
+
+    private void flush() {
+        for (Crawler crawler : crawlers) {
+            crawler.flush();
+        }
+        try {
+            crawlState.flush();
+        } catch (IOException e) {
+            builder_print("Failed to flush crawl state: " + e.getMessage());
+        }
+    }
+
+    private void logStatus() {
+        long fastest = topics.values().stream()
+                .filter(t -> t.interval.equals(DAEMON_MIN_TOPIC_INTERVAL))
+                .count();
+        builder_print("Daemon: " + topics.size() + " topics scheduled (" + fastest + " at the fastest rate), "
+                + crawlState.size() + " known articles, pending per host: " + frontier.queueDepths());
+        if (pipeline != null) builder_print("Pipeline: " + pipeline.report());
+    }
+}
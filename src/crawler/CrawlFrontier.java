@@ -0,0 +1,240 @@
+package crawler;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared URL frontier for all crawlers of a run.
+ * <p>
+ * Every host owns a priority queue of pending {@link CrawlTask}s (articles first, then the shallowest topics)
+ * and may have at most {@code perHostConcurrency} tasks in flight. Workers call {@link #take()} to get the next
+ * task of any host that still has capacity and {@link #complete(CrawlTask)} once it is done, so the number of
+ * concurrent fetches is bounded by the worker count and not by the number of sites.
+ * <p>
+ * A host is only served once its {@link HostRateLimiter} grants a token, so robots.txt crawl-delays hold no matter
+ * how many workers run. Fetchers report 429/503 answers through {@link #reportThrottled} to slow a host down.
+ */
+public class CrawlFrontier {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry e) -> e.task().kind())
+            .thenComparingInt(e -> e.task().depth())
+            .thenComparingLong(Entry::seq);
+
+    private record Entry(CrawlTask task, long seq) {}
+
+    private static final class HostQueue {
+        final String host;
+        final HostRateLimiter limiter;
+        final PriorityQueue<Entry> pending = new PriorityQueue<>(ORDER);
+        int inFlight;
+        boolean ready; // true while the host sits in the ready ring (pending work and free capacity)
+        boolean retired;
+
+        HostQueue(String host, HostRateLimiter limiter) {
+            this.host = host;
+            this.limiter = limiter;
+        }
+    }
+
+    private final int perHostConcurrency;
+    // a continuous frontier keeps its workers waiting for new tasks until it is closed
+    private final boolean continuous;
+
+    // all state below is guarded by "this"
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final ArrayDeque<HostQueue> readyHosts = new ArrayDeque<>();
+    private long nextSeq;
+    private int pendingTotal;
+    private int inFlightTotal;
+    private boolean closed;
+
+    public CrawlFrontier(int perHostConcurrency) {
+        this(perHostConcurrency, false);
+    }
+
+    public CrawlFrontier(int perHostConcurrency, boolean continuous) {
+        if (perHostConcurrency < 1) {
+            throw new IllegalArgumentException("perHostConcurrency must be >= 1, got " + perHostConcurrency);
+        }
+        this.perHostConcurrency = perHostConcurrency;
+        this.continuous = continuous;
+    }
+
+    /** Queues a task for its host. Returns false if the host was retired or the frontier is closed. */
+    public synchronized boolean offer(CrawlTask task) {
+        if (closed) return false;
+        HostQueue q = hosts.computeIfAbsent(task.host(), h -> new HostQueue(h,
+                HostRateLimiter.forRules(task.crawler().getSiteConfig().rules(), System.nanoTime())));
+        if (q.retired) return false;
+
+        q.pending.add(new Entry(task, nextSeq++));
+        pendingTotal++;
+        markReadyIfPossible(q);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Blocks until a task of some host with free capacity and an available rate token is available.
+     * Returns null once the frontier is closed or, unless it is continuous, drained (nothing pending or in flight).
+     */
+    public synchronized CrawlTask take() throws InterruptedException {
+        while (true) {
+            if (closed) return null;
+
+            long now = System.nanoTime();
+            long waitNanos = Long.MAX_VALUE;
+            for (int i = readyHosts.size(); i > 0; i--) {
+                HostQueue q = readyHosts.poll();
+                if (q.limiter.tryAcquire(now)) {
+                    q.ready = false;
+                    Entry e = q.pending.poll();
+                    pendingTotal--;
+                    q.inFlight++;
+                    inFlightTotal++;
+                    // round-robin: put the host at the back so other hosts get their turn first
+                    markReadyIfPossible(q);
+                    return e.task();
+                }
+                waitNanos = Math.min(waitNanos, q.limiter.nanosUntilAvailable(now));
+                readyHosts.add(q);
+            }
+
+            if (!continuous && pendingTotal == 0 && inFlightTotal == 0) {
+                notifyAll(); // wake the other idle workers so they can exit as well
+                return null;
+            }
+            if (waitNanos == Long.MAX_VALUE) {
+                wait();
+            } else {
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, 1));
+            }
+        }
+    }
+
+    /** Must be called exactly once for every task returned by {@link #take()}. */
+    public synchronized void complete(CrawlTask task) {
+        HostQueue q = hosts.get(task.host());
+        q.inFlight--;
+        inFlightTotal--;
+        markReadyIfPossible(q);
+        notifyAll();
+    }
+
+    /** The host answered 429/503; {@code retryAfterMillis} is its Retry-After hint or 0. */
+    public synchronized void reportThrottled(String host, long retryAfterMillis) {
+        HostQueue q = hosts.get(host);
+        if (q == null) return;
+        q.limiter.onThrottled(TimeUnit.MILLISECONDS.toNanos(retryAfterMillis), System.nanoTime());
+        CrawlerUtils.crawler_warn("Throttled by " + host + ", slowing down to "
+                + String.format("%.2f", q.limiter.currentRate()) + " req/s");
+    }
+
+    /** A fetch against the host succeeded. */
+    public synchronized void reportSuccess(String host) {
+        HostQueue q = hosts.get(host);
+        if (q != null) q.limiter.onSuccess(System.nanoTime());
+    }
+
+    /** Drops everything pending for a host and rejects new tasks for it, e.g. once its article limit is hit. */
+    public synchronized void retire(String host) {
+        HostQueue q = hosts.computeIfAbsent(host, h -> new HostQueue(h, HostRateLimiter.forRules(null, System.nanoTime())));
+        q.retired = true;
+        pendingTotal -= q.pending.size();
+        q.pending.clear();
+        if (q.ready) {
+            readyHosts.remove(q);
+            q.ready = false;
+        }
+        notifyAll();
+    }
+
+    /** Stops handing out work; blocked and future {@link #take()} calls return null. */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized int pendingCount() {
+        return pendingTotal;
+    }
+
+    public synchronized int inFlightCount() {
+        return inFlightTotal;
+    }
+
+    /** Snapshot of the number of pending tasks per host. */
+    public synchronized Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        hosts.forEach((host, q) -> depths.put(host, q.pending.size()));
+        return depths;
+    }
+
+    private void markReadyIfPossible(HostQueue q) {
+        if (!q.ready && !q.pending.isEmpty() && q.inFlight < perHostConcurrency) {
+            q.ready = true;
+            readyHosts.add(q);
+        }
+    }
+
+    //===========================================
+    // Worker loop
+    //===========================================
+
+    /** Processes tasks on the calling thread until the frontier is drained or closed. */
+    public void drain() throws InterruptedException {
+        CrawlTask task;
+        while ((task = take()) != null) {
+            run(task);
+        }
+    }
+
+    /**
+     * Hands every task to {@code executor} (typically one virtual thread per task) while keeping at most
+     * {@code maxInFlight} tasks running. Returns once the frontier is drained or closed.
+     */
+    public void drainConcurrently(Executor executor, int maxInFlight) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxInFlight);
+        while (true) {
+            permits.acquire();
+            CrawlTask task = take();
+            if (task == null) {
+                permits.release();
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        run(task);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                complete(task);
+                permits.release();
+                return;
+            }
+        }
+    }
+
+    private void run(CrawlTask task) {
+        try {
+            task.crawler().process(task, this);
+        } catch (Exception e) {
+            CrawlerUtils.crawler_error("Unexpected error on " + task.url() + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            complete(task);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package crawler;
+
+/** Callbacks a {@link Crawler} makes while processing tasks. Called on the worker threads. */
+public interface CrawlListener {
+
+    CrawlListener NONE = new CrawlListener() {};
+
+    /**
+     * A topic page was fetched (or failed to fetch) and yielded {@code newArticles} article links that were neither
+     * seen before nor fetched recently. Not called for topics that were skipped or queued again after throttling.
+     */
+    default void onTopicVisited(CrawlTask topic, int newArticles) {}
+}
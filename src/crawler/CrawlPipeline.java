@@ -0,0 +1,223 @@
+package crawler;
+
+import storage.Article;
+import storage.JsonlBatchWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static crawler.CrawlerUtils.*;
+import static global.Constants.*;
+
+/**
+ * Staged article pipeline: fetch -> parse/extract -> serialize -> write.
+ * <p>
+ * Fetching stays on the frontier workers; they hand each downloaded article page to {@link #submit}, which blocks
+ * while the parse queue is full, so a slow parse or disk slows the fetchers down instead of piling up pages in
+ * memory. Parse, serialize and write each run on their own fixed set of threads and are connected by bounded
+ * queues. Every stage counts its items, busy time and queue depth; {@link #report()} shows which one is the
+ * bottleneck (a full queue in front of a stage whose workers are busy close to 100% of the time).
+ * <p>
+ * The parse stage may end a job early: an article the crawler recognises as a near-duplicate of one already saved
+ * leaves no article behind, and is counted as dropped instead of being passed on.
+ */
+public final class CrawlPipeline {
+
+    /** One article travelling through the stages; every stage fills in its part. */
+    static final class ArticleJob {
+        final Crawler crawler;
+        final String url;
+        final byte[] page;
+        final String charset;
+        final String etag;
+        final String lastModified;
+        Article article;
+        // output of the serialize stage: a JSON file's bytes, or a line for the JSONL batch writer
+        byte[] serialized;
+        JsonlBatchWriter.Line line;
+
+        ArticleJob(Crawler crawler, String url, byte[] page, String charset, String etag, String lastModified) {
+            this.crawler = crawler;
+            this.url = url;
+            this.page = page;
+            this.charset = charset;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageFunction {
+        void apply(ArticleJob job) throws Exception;
+    }
+
+    private static final ArticleJob POISON = new ArticleJob(null, null, null, null, null, null);
+
+    /** Counters of one stage; the fetch stage has no queue of its own. */
+    private static final class StageMetrics {
+        final String name;
+        final int workers;
+        final AtomicLong items = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+
+        StageMetrics(String name, int workers) {
+            this.name = name;
+            this.workers = workers;
+        }
+
+        void record(long nanos, boolean ok) {
+            items.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+            if (!ok) failures.incrementAndGet();
+        }
+
+        String format(double elapsedSec, BlockingQueue<ArticleJob> queue, int capacity) {
+            long n = items.get();
+            double avgMs = n == 0 ? 0 : busyNanos.get() / 1e6 / n;
+            String busy = workers == 0 ? ""
+                    : String.format(" busy=%.0f%%", 100 * busyNanos.get() / 1e9 / (elapsedSec * workers));
+            String q = queue == null ? "" : String.format(" q=%d/%d", queue.size(), capacity);
+            String drop = dropped.get() == 0 ? "" : " drop=" + dropped.get();
+            return String.format("%s[%s%s %.1f/s avg=%.1fms%s fail=%d%s]",
+                    name, workers > 0 ? workers + "w" : "-", q, n / elapsedSec, avgMs, busy, failures.get(), drop);
+        }
+    }
+
+    private final class Stage {
+        final StageMetrics metrics;
+        final BlockingQueue<ArticleJob> in;
+        final int capacity;
+        final StageFunction fn;
+        final Stage next;
+        final List<Thread> threads = new ArrayList<>();
+
+        Stage(String name, int workers, int capacity, StageFunction fn, Stage next) {
+            this.metrics = new StageMetrics(name, workers);
+            this.in = new ArrayBlockingQueue<>(capacity);
+            this.capacity = capacity;
+            this.fn = fn;
+            this.next = next;
+            for (int i = 0; i < workers; i++) {
+                Thread t = new Thread(this::work, "Pipeline-" + name + "-" + (i + 1));
+                t.setDaemon(true);
+                threads.add(t);
+                t.start();
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    ArticleJob job = in.take();
+                    if (job == POISON) return;
+
+                    long start = System.nanoTime();
+                    boolean ok = false;
+                    try {
+                        fn.apply(job);
+                        ok = true;
+                    } catch (Throwable e) {
+                        // an Error on one page must not kill the worker, or the stage would stall once all are gone
+                        crawler_error(metrics.name + " failed for " + job.url + ": " + e);
+                    } finally {
+                        metrics.record(System.nanoTime() - start, ok);
+                    }
+
+                    if (!ok) {
+                        job.crawler.articleFailed(job);
+                    } else if (job.article == null) {
+                        metrics.dropped.incrementAndGet(); // parse stage recognised a near-duplicate
+                    } else if (next != null) {
+                        next.in.put(job);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Lets every worker finish the queued jobs, then waits for them to exit. */
+        void drain() throws InterruptedException {
+            for (int i = 0; i < threads.size(); i++) in.put(POISON);
+            for (Thread t : threads) t.join();
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final StageMetrics fetch = new StageMetrics("fetch", 0);
+    private final Stage write;
+    private final Stage serialize;
+    private final Stage parse;
+    // submitters share the read lock while they check closed and enqueue, so no job can land behind the poison pills
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public CrawlPipeline(int parseWorkers, int serializeWorkers, int writeWorkers, int queueCapacity) {
+        if (parseWorkers < 1 || serializeWorkers < 1 || writeWorkers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Pipeline workers and queue capacity must be >= 1.");
+        }
+        this.write = new Stage("write", writeWorkers, queueCapacity, job -> job.crawler.writeArticle(job), null);
+        this.serialize = new Stage("serialize", serializeWorkers, queueCapacity,
+                job -> job.crawler.serializeArticle(job), write);
+        this.parse = new Stage("parse", parseWorkers, queueCapacity,
+                job -> job.article = job.crawler.extractArticle(job), serialize);
+    }
+
+    /** Pipeline sized from the defaults in {@link global.Constants}. */
+    public static CrawlPipeline withDefaults() {
+        return new CrawlPipeline(PIPELINE_PARSE_WORKERS, PIPELINE_SERIALIZE_WORKERS,
+                PIPELINE_WRITE_WORKERS, PIPELINE_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Hands a fetched page to the parse stage, blocking while the stage is full.
+     * {@code fetchNanos} is the time the fetcher spent downloading it.
+     */
+    void submit(ArticleJob job, long fetchNanos) throws InterruptedException {
+        fetch.record(fetchNanos, true);
+        closeLock.readLock().lock();
+        try {
+            if (!closed) {
+                parse.in.put(job);
+                return;
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        job.crawler.articleFailed(job);
+    }
+
+    /** Processes everything already submitted, then stops the stage threads. Safe to call more than once. */
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            parse.drain();
+            serialize.drain();
+            write.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** One line with throughput, worker utilisation and queue depth per stage. */
+    public String report() {
+        double elapsed = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        return String.join(" -> ",
+                fetch.format(elapsed, null, 0),
+                parse.metrics.format(elapsed, parse.in, parse.capacity),
+                serialize.metrics.format(elapsed, serialize.in, serialize.capacity),
+                write.metrics.format(elapsed, write.in, write.capacity));
+    }
+}
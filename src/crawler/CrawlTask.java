@@ -0,0 +1,26 @@
+package crawler;
+
+/**
+ * One unit of work in the {@link CrawlFrontier}: a single URL to fetch on behalf of a site's {@link Crawler}.
+ * Topic pages are expanded into more tasks; article pages are parsed and written.
+ */
+public record CrawlTask(Crawler crawler, String url, int depth, Kind kind, int attempt) {
+
+    public enum Kind {
+        // articles are drained before topics so the per-site limit is reached with as few page loads as possible
+        ARTICLE, TOPIC
+    }
+
+    public CrawlTask(Crawler crawler, String url, int depth, Kind kind) {
+        this(crawler, url, depth, kind, 0);
+    }
+
+    /** The same task, queued again after the host throttled it. */
+    public CrawlTask retry() {
+        return new CrawlTask(crawler, url, depth, kind, attempt + 1);
+    }
+
+    public String host() {
+        return crawler.host();
+    }
+}
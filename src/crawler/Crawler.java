@@ -1,17 +1,30 @@
 package crawler;
+import analysis.ArticleEmbedder;
+import main.newsmap.geo.CountryGazetteer;
 import org.jetbrains.annotations.Nullable;
 import storage.Article;
+import storage.ArticleStore;
+import storage.CrawlState;
+import storage.JsonlBatchWriter;
+import storage.ParquetBatchWriter;
 import storage.SiteConfig;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
 
 import java.io.*;
-import java.net.MalformedURLException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import static global.Constants.*;
 import java.net.URI;
 import static crawler.CrawlerUtils.*;
@@ -21,10 +34,17 @@ public class Crawler {
     public static final Instant CRAWL_RUN_TIMESTAMP = Instant.now();
 
     private final SiteConfig config;
-    private final Set<String> visited = new HashSet<>();
-
-    private int maxArticlesToFetch;
-    private int currentArticlesFetched = 0;
+    private final String host;
+    // topic pages of this run; small, and a later run has to see them again
+    private final Set<String> visitedTopics = ConcurrentHashMap.newKeySet();
+    // article URLs, possibly shared with the other crawlers of a run; a URL is claimed while queued or in flight and
+    // only counts as seen once it is saved or needs no fetch, so a failed one is queued again by the next link to it
+    private final SeenUrlSet seenArticles;
+    // what earlier runs fetched, for skipping and conditional GETs
+    private final CrawlState crawlState;
+
+    private final int maxArticlesToFetch;
+    private final AtomicInteger currentArticlesFetched = new AtomicInteger();
 
     private final FileFormat outputFormat;
     private final boolean outputAsBatch;
@@ -33,11 +53,52 @@ public class Crawler {
     private final File batchFile;
 
     @Nullable
-    private final Writer batchFileWriter;
+    private final JsonlBatchWriter batchFileWriter;
+
+    @Nullable
+    private final ParquetBatchWriter parquetWriter;
+
+    // parse/serialize/write stages behind this crawler's fetches; owned when the crawler runs on its own
+    private final CrawlPipeline pipeline;
+    private final boolean ownsPipeline;
+
+    private volatile CrawlListener listener = CrawlListener.NONE;
+
+    // queryable copy of every saved article, next to the batch output
+    @Nullable
+    private volatile ArticleStore articleStore;
+
+    // places stored articles at the first country their title or lead names
+    @Nullable
+    private volatile CountryGazetteer gazetteer;
+
+    // text signatures of recently saved articles, shared by all sites; near-duplicates are dropped after parsing
+    @Nullable
+    private volatile NearDuplicateIndex nearDuplicates;
+
+    // embeds saved articles in the background
+    @Nullable
+    private volatile ArticleEmbedder embedder;
+
+    private final ArticleExtractor extractor;
+    private volatile ExtractionMode extractionMode = DEFAULT_EXTRACTION_MODE;
+
+    public Crawler(SiteConfig config, int maxArticlesToFetch, FileFormat outputFormat, boolean isConcurrent) throws IOException {
+        this(config, maxArticlesToFetch, outputFormat, isConcurrent,
+                new SeenUrlSet(DEFAULT_SEEN_URL_CAPACITY), CrawlState.inMemory(), null);
+    }
 
-    public Crawler(SiteConfig config, int maxArticlesToFetch, FileFormat outputFormat, boolean isConcurrent) throws IOException{
+    /** With a null {@code pipeline} the crawler starts a single-worker pipeline of its own and closes it in {@link #close()}. */
+    public Crawler(SiteConfig config, int maxArticlesToFetch, FileFormat outputFormat, boolean isConcurrent,
+                   SeenUrlSet seenArticles, CrawlState crawlState, @Nullable CrawlPipeline pipeline) throws IOException {
         crawler_info("Initializing Crawler for " + config.baseUrl());
         this.config = config;
+        this.seenArticles = seenArticles;
+        this.crawlState = crawlState;
+        this.ownsPipeline = pipeline == null;
+        this.pipeline = ownsPipeline ? new CrawlPipeline(1, 1, 1, PIPELINE_QUEUE_CAPACITY) : pipeline;
+        this.host = URI.create(config.baseUrl()).getHost();
+        this.extractor = new ArticleExtractor(config, host);
         this.maxArticlesToFetch = maxArticlesToFetch;
         this.outputFormat = outputFormat;
         this.outputAsBatch = switch (outputFormat) {
@@ -47,122 +108,284 @@ public class Crawler {
         if (outputAsBatch) {
             String extension = FileFormat.getExtensionFromFormat(outputFormat);
             this.batchFile = createBatchFile(config,extension,CRAWL_RUN_TIMESTAMP,isConcurrent);
-            if (!batchFile.exists()) {
-                batchFile.getParentFile().mkdirs();
-                batchFile.createNewFile();
-            }
-            this.batchFileWriter = new BufferedWriter(new FileWriter(batchFile, true));
+            // the writers create the file and its directory
+            this.batchFileWriter = outputFormat == FileFormat.JSONL ? new JsonlBatchWriter(batchFile.toPath()) : null;
+            this.parquetWriter = outputFormat == FileFormat.PARQUET ? new ParquetBatchWriter(batchFile.toPath()) : null;
         } else {
             this.batchFile = null;
             this.batchFileWriter = null;
+            this.parquetWriter = null;
         }
     }
 
+    /** Crawls this site alone on the calling thread. */
     public void crawl() {
         crawler_info("Starting crawl for: " + config.baseUrl());
+        CrawlFrontier frontier = new CrawlFrontier(1);
         try {
-            crawl(config.baseUrl(), 0);
-        } catch (Exception e) {
-            crawler_error("Fatal crawler_error during crawl: " + e.getMessage());
-            e.printStackTrace();
+            frontier.offer(seedTask());
+            frontier.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            crawler_error("Crawl interrupted for: " + config.baseUrl());
         } finally {
             close();
+            crawler_info("Pipeline: " + pipeline.report());
         }
     }
 
-    /** Main recursive crawler entry point */
-    public void crawl(String url, int depth) throws Exception {
-        if (depth > config.maxDepth()) {
-            crawler_info("Max depth reached @ " + url);
+    /** The task that starts this site's crawl: its base URL as a depth-0 topic page. */
+    public CrawlTask seedTask() {
+        visitedTopics.add(config.baseUrl());
+        return new CrawlTask(this, config.baseUrl(), 0, CrawlTask.Kind.TOPIC);
+    }
+
+    /**
+     * Handles one task taken from the frontier. Topic pages queue their article and topic links,
+     * article pages are fetched and handed to the {@link CrawlPipeline}. Safe to call from several workers at once.
+     */
+    public void process(CrawlTask task, CrawlFrontier frontier) {
+        if (isMaxArticlesReached()) {
+            frontier.retire(host);
             return;
         }
-        if (isMaxArticlesReached()) return;
-        if (visited.contains(url)) return;
+        switch (task.kind()) {
+            case TOPIC -> {
+                int newArticles = crawlTopic(task, frontier);
+                if (newArticles >= 0) listener.onTopicVisited(task, newArticles);
+            }
+            case ARTICLE -> crawlArticle(task, frontier);
+        }
+        if (isMaxArticlesReached()) frontier.retire(host);
+    }
+
+    /** Returns the number of new articles queued, or -1 if the topic was skipped or queued again. */
+    private int crawlTopic(CrawlTask task, CrawlFrontier frontier) {
+        String url = task.url();
+        if (task.depth() > config.maxDepth()) {
+            crawler_info("Max depth reached @ " + url);
+            return -1;
+        }
         if (!isAllowed(url)) {
             crawler_warn("Skipping disallowed URL: " + url);
-            return;
+            return -1;
         }
 
-        visited.add(url);
-
         Document doc;
         try {
-            doc = Jsoup.connect(url)
-                    .timeout(10_000)
-                    .userAgent(USER_AGENT)
-                    .get();
+            Connection.Response res = fetch(task, frontier, null);
+            if (res == null) return task.attempt() < MAX_FETCH_RETRIES ? -1 : 0;
+            doc = res.parse();
         } catch (IOException e) {
             crawler_error("Failed to fetch page: " + url + " (" + e.getMessage() + ")");
-            return;
+            return 0;
         }
 
-        extractArticles(doc);
-        if (isMaxArticlesReached()) return;
-
-        followTopics(doc, depth);
+        int newArticles = queueArticles(doc, task, frontier);
+        queueTopics(doc, task, frontier);
+        return newArticles;
     }
 
     //===========================================
     // Extract Article Pages
     //===========================================
-    private void extractArticles(Document doc) {
+    private int queueArticles(Document doc, CrawlTask parent, CrawlFrontier frontier) {
+        int queued = 0;
         for (String sel : config.articleSelectors()) {
             for (Element link : doc.select(sel)) {
-
                 String articleUrl = link.absUrl("href");
 
-                if (articleUrl.isEmpty() || visited.contains(articleUrl)) continue;
-                if (!isAllowed(articleUrl)) continue;
+                if (articleUrl.isEmpty() || !seenArticles.claim(articleUrl)) continue;
+                if (!isAllowed(articleUrl)) {
+                    seenArticles.complete(articleUrl);
+                    continue;
+                }
+                if (crawlState.fetchedWithin(DigestUtils.sha256Hex(articleUrl), ARTICLE_RECHECK_INTERVAL, Instant.now())) {
+                    seenArticles.complete(articleUrl);
+                    continue; // fetched recently, not worth even a conditional GET yet
+                }
+
+                if (frontier.offer(new CrawlTask(this, articleUrl, parent.depth(), CrawlTask.Kind.ARTICLE))) queued++;
+                else seenArticles.release(articleUrl);
+            }
+        }
+        return queued;
+    }
+
+    /** Fetch stage: downloads the page and queues it for the pipeline, which parses, serializes and writes it. */
+    private void crawlArticle(CrawlTask task, CrawlFrontier frontier) {
+        String articleUrl = task.url();
+        String id = DigestUtils.sha256Hex(articleUrl);
+        CrawlState.Entry known = crawlState.get(id);
+
+        // reserve a slot first so concurrent workers never write more than maxArticlesToFetch
+        if (!reserveArticleSlot()) {
+            seenArticles.release(articleUrl);
+            return;
+        }
+        boolean submitted = false;
+        try {
+            long start = System.nanoTime();
+            Connection.Response res = fetch(task, frontier, known);
+            if (res == null) return; // queued again, or given up and released by fetch
+            if (res.statusCode() == 304) {
+                if (known == null) {
+                    // nothing was asked conditionally, so there is no copy this could refer to
+                    crawler_error("Unexpected 304 for an unconditional request @ " + articleUrl);
+                    seenArticles.release(articleUrl);
+                    return;
+                }
+                crawlState.put(known.refreshed(Instant.now()));
+                seenArticles.complete(articleUrl);
+                crawler_info("Unchanged since last run: " + articleUrl);
+                return;
+            }
 
-                visited.add(articleUrl);
-                try {
-                    Document articleDoc = Jsoup.connect(articleUrl)
-                            .timeout(10_000)
-                            .userAgent(USER_AGENT)
-                            .get();
+            byte[] page = res.bodyAsBytes();
+            pipeline.submit(new CrawlPipeline.ArticleJob(this, articleUrl, page, res.charset(),
+                    res.header("ETag"), res.header("Last-Modified")), System.nanoTime() - start);
+            submitted = true;
 
-                    Article article = parse(articleDoc, articleUrl);
+        } catch (HttpStatusException e) {
+            crawler_error("I/O crawler_error @ " + articleUrl + ": " + e.getMessage());
+            // a page that is gone stays gone; any other error may clear up by the next link to it
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 410) seenArticles.complete(articleUrl);
+            else seenArticles.release(articleUrl);
+        } catch (IOException e) {
+            crawler_error("I/O crawler_error @ " + articleUrl + ": " + e.getMessage());
+            seenArticles.release(articleUrl);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            seenArticles.release(articleUrl);
+        } catch (Exception e) {
+            crawler_error("Unexpected crawler_error fetching article: " + articleUrl);
+            e.printStackTrace();
+            seenArticles.release(articleUrl);
+        } finally {
+            // once submitted, the pipeline releases the slot if a later stage fails
+            if (!submitted) currentArticlesFetched.decrementAndGet();
+        }
+    }
 
-                    switch (outputFormat) {
-                        case JSON -> article.saveAsSingleJSON();
-                        case JSONL -> article.appendToJsonBatch(batchFileWriter);
-                        // case PARQUET -> article.appendToParquetBatch();
-                    }
+    //===========================================
+    // Pipeline Stages
+    //===========================================
 
-                    crawler_info("Saved article: " + articleUrl);
-                    currentArticlesFetched++;
+    /** Parse stage; returns null for a near-duplicate of an article already saved, which ends the job. */
+    @Nullable
+    Article extractArticle(CrawlPipeline.ArticleJob job) throws IOException {
+        Article article = parseArticle(job);
+        return isNearDuplicate(job, article) ? null : article;
+    }
 
-                } catch (IOException e) {
-                    crawler_error("I/O crawler_error @ " + articleUrl + ": " + e.getMessage());
-                } catch (Exception e) {
-                    crawler_error("Unexpected crawler_error parsing article: " + articleUrl);
-                    e.printStackTrace();
-                }
+    private Article parseArticle(CrawlPipeline.ArticleJob job) throws IOException {
+        if (extractionMode == ExtractionMode.DOM) {
+            return extractor.fromDocument(Jsoup.parse(new ByteArrayInputStream(job.page), job.charset, job.url), job.url);
+        }
+        Charset charset = job.charset == null ? StandardCharsets.UTF_8 : Charset.forName(job.charset);
+        try (StreamParser parser = new StreamParser(Parser.htmlParser())) {
+            parser.parse(new InputStreamReader(new ByteArrayInputStream(job.page), charset), job.url);
+            return extractor.fromStream(parser, job.url);
+        }
+    }
+
+    private boolean isNearDuplicate(CrawlPipeline.ArticleJob job, Article article) {
+        NearDuplicateIndex index = nearDuplicates;
+        if (index == null) return false;
+        int[] signature = index.signature(article.title(), article.body());
+        if (signature == null) return false;
+
+        NearDuplicateIndex.Match match = index.addIfNew(signature, article.id(), job.url);
+        if (match == null) return false;
+
+        crawler_info(String.format("Near-duplicate (%.2f) of %s, skipped: %s", match.similarity(), match.url(), job.url));
+        // handled like a saved article as far as refetching goes, but it does not use up one of the saved slots
+        crawlState.put(new CrawlState.Entry(article.id(), Instant.now().toEpochMilli(), job.etag, job.lastModified));
+        seenArticles.complete(job.url);
+        currentArticlesFetched.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Serialize stage: what {@link #writeArticle} puts on disk. JSONL lines go into the batch writer's reusable
+     * buffers; Parquet needs nothing here since it encodes whole row groups.
+     */
+    void serializeArticle(CrawlPipeline.ArticleJob job) throws IOException {
+        switch (outputFormat) {
+            case JSON -> job.serialized = Article.PRETTY_WRITER.writeValueAsBytes(job.article);
+            case JSONL -> job.line = batchFileWriter.serialize(job.article);
+            case PARQUET -> { }
+        }
+    }
+
+    /** Write stage; the article counts as saved once this returns. */
+    void writeArticle(CrawlPipeline.ArticleJob job) throws IOException {
+        switch (outputFormat) {
+            case JSON -> Files.write(new File(Article.OUT_DIR, job.article.id() + ".json").toPath(), job.serialized);
+            case JSONL -> batchFileWriter.append(job.line);
+            case PARQUET -> parquetWriter.append(job.article);
+        }
+
+        ArticleStore store = articleStore;
+        if (store != null) {
+            try {
+                CountryGazetteer gazetteer = this.gazetteer;
+                int country = gazetteer == null ? -1 : locate(gazetteer, job.article);
+                if (country < 0) store.put(job.article);
+                else store.put(job.article, gazetteer.lat(country), gazetteer.lon(country));
+            } catch (IOException e) {
+                // the article is in the batch output already, so it still counts as saved
+                crawler_error("Failed to store article " + job.url + ": " + e.getMessage());
+            }
+        }
 
-                if (isMaxArticlesReached()) return;
+        ArticleEmbedder embedder = this.embedder;
+        if (embedder != null) {
+            try {
+                embedder.submit(job.article);
+            } catch (InterruptedException e) {
+                // saved all the same; a later backfill embeds it
+                Thread.currentThread().interrupt();
             }
         }
+
+        crawlState.put(new CrawlState.Entry(job.article.id(), Instant.now().toEpochMilli(),
+                job.etag, job.lastModified));
+        seenArticles.complete(job.url);
+        crawler_info("Saved article: " + job.url);
+    }
+
+    /** Feature of the gazetteer the article is about: the first country its title names, else its body lead. */
+    private static int locate(CountryGazetteer gazetteer, Article article) {
+        int country = gazetteer.find(article.title());
+        if (country >= 0) return country;
+        String body = article.body();
+        if (body == null) return -1;
+        return gazetteer.find(body.length() <= ARTICLE_LOCATION_BODY_LEAD ? body : body.substring(0, ARTICLE_LOCATION_BODY_LEAD));
+    }
+
+    /**
+     * Called by the pipeline when a stage fails, so the article's slot can be used by another one and the next link
+     * to it queues it again.
+     */
+    void articleFailed(CrawlPipeline.ArticleJob job) {
+        seenArticles.release(job.url);
+        currentArticlesFetched.decrementAndGet();
     }
 
 
     //===========================================
     // Follow Topic / Category Links
     //===========================================
-    private void followTopics(Document doc, int depth) {
+    private void queueTopics(Document doc, CrawlTask parent, CrawlFrontier frontier) {
+        if (parent.depth() + 1 > config.maxDepth()) return;
 
         for (String sel : config.topicSelectors()) {
             for (Element link : doc.select(sel)) {
                 String topicUrl = link.absUrl("href");
-                if (topicUrl.isEmpty() || visited.contains(topicUrl)) continue;
+                if (topicUrl.isEmpty() || !visitedTopics.add(topicUrl)) continue;
 
-                try {
-                    crawl(topicUrl, depth + 1);
-                } catch (Exception e) {
-                    crawler_error("Error crawling topic: " + topicUrl);
-                    e.printStackTrace();
-                }
-
-                if (isMaxArticlesReached()) return;
+                frontier.offer(new CrawlTask(this, topicUrl, parent.depth() + 1, CrawlTask.Kind.TOPIC));
             }
         }
     }
@@ -170,12 +393,56 @@ public class Crawler {
     //===========================================
     // Helpers
     //===========================================
-    private boolean isMaxArticlesReached() {
-        if (currentArticlesFetched >= maxArticlesToFetch) {
-            crawler_info("Max articles reached:" + currentArticlesFetched);
-            return true;
+
+    /**
+     * Fetches a task's page and reports the outcome to the frontier's rate limiter. With a {@code known} state entry
+     * the request is conditional and may come back as 304 Not Modified.
+     * Returns null if the host throttled the request; the task is then queued again up to MAX_FETCH_RETRIES times.
+     */
+    @Nullable
+    private Connection.Response fetch(CrawlTask task, CrawlFrontier frontier, @Nullable CrawlState.Entry known)
+            throws IOException {
+        Connection conn = Jsoup.connect(task.url())
+                .timeout(10_000)
+                .userAgent(USER_AGENT)
+                .ignoreHttpErrors(true);
+        if (known != null) {
+            if (known.etag() != null) conn.header("If-None-Match", known.etag());
+            if (known.lastModified() != null) conn.header("If-Modified-Since", known.lastModified());
         }
-        return false;
+        Connection.Response res = conn.execute();
+
+        int status = res.statusCode();
+        if (status == 429 || status == 503) {
+            frontier.reportThrottled(host, parseRetryAfterMillis(res.header("Retry-After")));
+            if (task.attempt() < MAX_FETCH_RETRIES && frontier.offer(task.retry())) {
+                crawler_warn("HTTP " + status + " @ " + task.url() + ", retrying later");
+            } else {
+                crawler_error("HTTP " + status + " @ " + task.url() + ", giving up");
+                if (task.kind() == CrawlTask.Kind.ARTICLE) seenArticles.release(task.url());
+            }
+            return null;
+        }
+        if (status >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", status, task.url());
+        }
+
+        frontier.reportSuccess(host);
+        return res;
+    }
+
+    private boolean isMaxArticlesReached() {
+        return currentArticlesFetched.get() >= maxArticlesToFetch;
+    }
+
+    private boolean reserveArticleSlot() {
+        int n;
+        do {
+            n = currentArticlesFetched.get();
+            if (n >= maxArticlesToFetch) return false;
+        } while (!currentArticlesFetched.compareAndSet(n, n + 1));
+        if (n + 1 == maxArticlesToFetch) crawler_info("Max articles reached:" + maxArticlesToFetch);
+        return true;
     }
     /**
      * Local check for robots.txt permissions using the rules inside SiteConfig.
@@ -194,46 +461,68 @@ public class Crawler {
         }
     }
 
+    /**
+     * Pushes buffered batch output to disk so readers see the articles saved so far. Parquet rows only become
+     * readable once the file's footer is written, so a Parquet file is finished here only once it has reached
+     * its maximum age; flushing it earlier would just shrink row groups.
+     */
+    public void flush() {
+        try {
+            if (batchFileWriter != null) batchFileWriter.flush();
+            if (parquetWriter != null) parquetWriter.flush();
+        } catch (IOException e) {
+            crawler_error("Failed to flush batch file for " + config.baseUrl() + ": " + e.getMessage());
+        }
+    }
+
+    /** Closes the batch file; an owned pipeline is drained first so its queued articles still get written. */
     public void close() {
+        if (ownsPipeline) pipeline.close();
         if (batchFileWriter != null) {
             try {
                 batchFileWriter.close();
             } catch (IOException ignored) {}
         }
+        if (parquetWriter != null) {
+            try {
+                parquetWriter.close();
+            } catch (IOException e) {
+                crawler_error("Failed to finish Parquet file for " + config.baseUrl() + ": " + e.getMessage());
+            }
+        }
     }
 
-    /** Parses an article Document into an Article record */
-    private Article parse(Document doc, String url) throws MalformedURLException {
-        String title = doc.select(config.articleTitle()).text();
+    public SiteConfig getSiteConfig() {
+        return config;
+    }
 
-        // --- Timestamp extraction ---
-        Element timeEl = doc.select(config.articleTime()).first();
-        String time = extractTimeAttribute(timeEl);  // use helper below
-        Instant publishedAt = parseSmartTimestamp(time);
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
 
-        // --- Parse article body ---
-        String body = doc.select(config.articleBody()).text();
+    public void setArticleStore(@Nullable ArticleStore articleStore) {
+        this.articleStore = articleStore;
+    }
 
-        // --- ID + host extraction ---
-        String id = DigestUtils.sha256Hex(url);
-        String host = URI.create(config.baseUrl()).toURL().getHost();
-        if (host == null) host = "unknown";
+    public void setGazetteer(@Nullable CountryGazetteer gazetteer) {
+        this.gazetteer = gazetteer;
+    }
 
-        // --- Timestamp parsing ---
-        return new Article(
-                id,
-                url,
-                title,
-                body,
-                host,
-                timeStampFormatter.format(publishedAt),
-                timeStampFormatter.format(Instant.now())
-        );
+    public void setNearDuplicateIndex(@Nullable NearDuplicateIndex nearDuplicates) {
+        this.nearDuplicates = nearDuplicates;
     }
 
+    public void setEmbedder(@Nullable ArticleEmbedder embedder) {
+        this.embedder = embedder;
+    }
 
-    public SiteConfig getSiteConfig() {
-        return config;
+    public void setListener(CrawlListener listener) {
+        this.listener = listener == null ? CrawlListener.NONE : listener;
+    }
+
+    /** Frontier key of this site. */
+    public String host() {
+        return host;
     }
 
 
@@ -1,11 +1,23 @@
 package crawler;
 
+import analysis.ArticleEmbedder;
+import analysis.OnnxEmbeddingModel;
+import main.newsmap.geo.CountryGazetteer;
+import main.newsmap.geo.WorldGeometry;
+import org.jetbrains.annotations.Nullable;
+import storage.ArticleStore;
+import storage.CrawlState;
 import storage.SiteConfig;
+import storage.VectorStore;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static crawler.CrawlerUtils.*;
 import static crawler.CrawlerTester.info;
@@ -15,10 +27,31 @@ public class CrawlerBuilder {
 
     private final int maxArticleCountForEach;
     private final boolean runConcurrently;
+    private final FetchMode fetchMode;
+    // platform mode: number of worker threads, virtual mode: max fetches in flight
+    private final int workerCount;
+    private final int perHostConcurrency;
     private final List<SiteConfig> configList;
     private final List<Crawler> crawlerList = new ArrayList<>();
+    private final CrawlState crawlState;
+    // one set for all sites, so a story linked from several sections or sites is fetched once
+    private final SeenUrlSet seenArticles = new SeenUrlSet(DEFAULT_SEEN_URL_CAPACITY);
+    private final ArticleStore articleStore;
+    // shared by all crawlers of a concurrent run; a sequential crawler drains its own pipeline when it finishes
+    @Nullable
+    private final CrawlPipeline pipeline;
+    private final NearDuplicateIndex nearDuplicates;
+    // null when no embedding model is installed
+    @Nullable
+    private final VectorStore vectorStore;
+    @Nullable
+    private final ArticleEmbedder embedder;
 
-    public CrawlerBuilder(int maxArticleCountForEach, boolean runConcurrently, String configFile, FileFormat format) {
+    public CrawlerBuilder(int maxArticleCountForEach, boolean runConcurrently, String configFile, FileFormat format,
+                          FetchMode fetchMode, int workerCount, int perHostConcurrency) {
+        if (workerCount < 1 || perHostConcurrency < 1) {
+            throw new IllegalArgumentException("[CRAWLER BUILDER] workerCount and perHostConcurrency must be >= 1.");
+        }
 
         List<SiteConfig> listOfSiteConfigs = SiteConfig.generateConfigsWithRobots(configFile);
         if (listOfSiteConfigs.isEmpty()) {
@@ -28,16 +61,96 @@ public class CrawlerBuilder {
         this.configList = listOfSiteConfigs;
         this.runConcurrently = runConcurrently;
         this.maxArticleCountForEach = maxArticleCountForEach;
+        this.fetchMode = fetchMode;
+        this.workerCount = workerCount;
+        this.perHostConcurrency = perHostConcurrency;
 
-        for (SiteConfig cfg : configList) {
-            builder_print("Setting Up Crawler for " + cfg.baseUrl());
+        try {
+            this.crawlState = CrawlState.open(Path.of(CRAWL_STATE_FILE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open crawl state: " + CRAWL_STATE_FILE, e);
+        }
+        ArticleStore store = null;
+        CrawlPipeline sharedPipeline = null;
+        OnnxEmbeddingModel model = null;
+        VectorStore vectors = null;
+        ArticleEmbedder articleEmbedder = null;
+        try {
             try {
-                Crawler crawler = new Crawler(cfg, this.maxArticleCountForEach, format, this.runConcurrently);
-                crawlerList.add(crawler);
+                store = ArticleStore.open(Path.of(ARTICLE_STORE_DIR));
             } catch (IOException e) {
-                throw new IllegalStateException("Failed to create crawler for: " + cfg.baseUrl(), e);
+                throw new IllegalStateException("Failed to open article store: " + ARTICLE_STORE_DIR, e);
+            }
+            this.articleStore = store;
+
+            sharedPipeline = runConcurrently ? CrawlPipeline.withDefaults() : null;
+            this.pipeline = sharedPipeline;
+
+            model = loadEmbeddingModel();
+            if (model != null) {
+                try {
+                    vectors = VectorStore.open(Path.of(EMBEDDING_DIR), model.dimension());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open vector store: " + EMBEDDING_DIR, e);
+                }
+                // from here on the embedder owns the model and closes it
+                articleEmbedder = ArticleEmbedder.withDefaults(model, vectors);
+                model = null;
             }
+            this.vectorStore = vectors;
+            this.embedder = articleEmbedder;
+
+            // like the seen-URL set, one index, so a wire story run by several sites is saved once
+            this.nearDuplicates = new NearDuplicateIndex(NEAR_DUPLICATE_CAPACITY, NEAR_DUPLICATE_SIMILARITY,
+                    NEAR_DUPLICATE_MIN_WORDS);
+            CountryGazetteer gazetteer = loadGazetteer();
+            for (SiteConfig cfg : configList) {
+                builder_print("Setting Up Crawler for " + cfg.baseUrl());
+                try {
+                    Crawler crawler = new Crawler(cfg, this.maxArticleCountForEach, format, this.runConcurrently,
+                            seenArticles, crawlState, pipeline);
+                    crawler.setArticleStore(articleStore);
+                    crawler.setGazetteer(gazetteer);
+                    crawler.setNearDuplicateIndex(nearDuplicates);
+                    crawler.setEmbedder(embedder);
+                    crawlerList.add(crawler);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to create crawler for: " + cfg.baseUrl(), e);
+                }
+            }
+        } catch (RuntimeException e) {
+            // nothing will ever close what was opened so far, so do it here
+            crawlerList.forEach(Crawler::close);
+            if (sharedPipeline != null) sharedPipeline.close();
+            if (articleEmbedder != null) articleEmbedder.close();
+            closeQuietly(model, "embedding model");
+            closeQuietly(vectors, "vector store");
+            closeQuietly(store, "article store");
+            closeQuietly(crawlState, "crawl state");
+            throw e;
         }
+
+        if (embedder != null) backfillEmbeddings();
+    }
+
+    private static void closeQuietly(@Nullable AutoCloseable resource, String what) {
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception e) {
+            builder_print("Failed to close " + what + ": " + e.getMessage());
+        }
+    }
+
+    public CrawlerBuilder(int maxArticleCountForEach, boolean runConcurrently, String configFile, FileFormat format,
+                          int workerCount, int perHostConcurrency) {
+        this(maxArticleCountForEach, runConcurrently, configFile, format,
+                FetchMode.PLATFORM_THREADS, workerCount, perHostConcurrency);
+    }
+
+    public CrawlerBuilder(int maxArticleCountForEach, boolean runConcurrently, String configFile, FileFormat format) {
+        this(maxArticleCountForEach, runConcurrently, configFile, format,
+                FetchMode.PLATFORM_THREADS, DEFAULT_CRAWL_WORKERS, DEFAULT_PER_HOST_CONCURRENCY);
     }
 
     public CrawlerBuilder(int maxArticleCountForEach, boolean runConcurrently) {
@@ -48,11 +161,50 @@ public class CrawlerBuilder {
         this(maxArticleCountForEach, true, null, FileFormat.JSONL);
     }
 
+    /** Switches every crawler to {@code mode}; {@link ExtractionMode#STREAMING} is opt-in. */
+    public void setExtractionMode(ExtractionMode mode) {
+        crawlerList.forEach(crawler -> crawler.setExtractionMode(mode));
+    }
+
     public void startCrawl() {
-        if (this.runConcurrently) {
-            concurrentCrawl();
-        } else {
-            sequentialCrawl();
+        try {
+            if (!this.runConcurrently) {
+                sequentialCrawl();
+            } else if (fetchMode == FetchMode.VIRTUAL_THREADS) {
+                virtualThreadCrawl();
+            } else {
+                concurrentCrawl();
+            }
+        } finally {
+            try {
+                crawlState.close();
+                builder_print("Crawl state saved: " + crawlState.size() + " known articles.");
+            } catch (IOException e) {
+                builder_print("Failed to save crawl state: " + e.getMessage());
+            }
+            builder_print("Near-duplicates skipped: " + nearDuplicates.duplicates());
+            closeEmbedder();
+            closeArticleStore();
+        }
+    }
+
+    /**
+     * Runs the crawlers as a {@link CrawlDaemon} until the JVM is shut down. Meant to be built with an
+     * effectively unlimited article count, since a daemon crawler never retires its host.
+     */
+    public void startDaemon() {
+        CrawlDaemon daemon = new CrawlDaemon(crawlerList, seenArticles, crawlState, pipeline, workerCount, perHostConcurrency);
+        // inside run(), so the shutdown hook's stop() also waits for these
+        daemon.setAfterStop(() -> {
+            closeEmbedder();
+            closeArticleStore();
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "CrawlDaemonShutdown"));
+        try {
+            daemon.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Crawl daemon interrupted", e);
         }
     }
 
@@ -63,44 +215,47 @@ public class CrawlerBuilder {
         }
     }
 
+    /**
+     * Runs every site through one shared {@link CrawlFrontier}: {@code workerCount} workers pull tasks from
+     * whichever host has pending work and fewer than {@code perHostConcurrency} fetches in flight.
+     */
     private void concurrentCrawl() {
-        int numCrawlers = crawlerList.size();
+        builder_print("Starting concurrent crawling of " + crawlerList.size() + " sites with "
+                + workerCount + " workers (" + perHostConcurrency + " per host).");
 
-        builder_print("Starting concurrent crawling with " + numCrawlers + " threads.");
+        CrawlFrontier frontier = new CrawlFrontier(perHostConcurrency);
+        for (Crawler crawler : crawlerList) {
+            frontier.offer(crawler.seedTask());
+        }
 
-        ExecutorService pool = Executors.newFixedThreadPool(numCrawlers, r -> {
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount, r -> {
             Thread t = new Thread(r);
-            t.setName("CrawlerThread-" + t.getId());
+            t.setName("CrawlerThread-" + threadIds.incrementAndGet());
             return t;
         });
 
-        List<Callable<Void>> tasks = new ArrayList<>();
-
-        for (Crawler crawler : crawlerList) {
-            tasks.add(() -> {
-                String name = crawler.getSiteConfig().baseUrl();
-                builder_print("Starting: " + name + " on " + Thread.currentThread().getName());
-                try {
-                    crawler.crawl();
-                    builder_print("Finished: " + name);
-                } catch (Exception e) {
-                    builder_print("FAILED: " + name + " — " + e.getMessage());
-                    throw e;
-                }
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(() -> {
+                frontier.drain();
                 return null;
             });
         }
 
         try {
-            // invokeAll returns when ALL tasks finish or timeout hits
-            List<Future<Void>> futures = pool.invokeAll(tasks, 5, TimeUnit.MINUTES);
-
+            // invokeAll returns when ALL workers finish or timeout hits
+            List<Future<Void>> futures = pool.invokeAll(workers, 5, TimeUnit.MINUTES);
 
             for (Future<Void> f : futures) {
+                if (f.isCancelled()) {
+                    builder_print("Crawl timed out with pending tasks per host: " + frontier.queueDepths());
+                    break;
+                }
                 try {
                     f.get();
                 } catch (ExecutionException ee) {
-                    throw new IllegalStateException("A crawler failed", ee.getCause());
+                    throw new IllegalStateException("A crawl worker failed", ee.getCause());
                 }
             }
 
@@ -108,12 +263,130 @@ public class CrawlerBuilder {
             Thread.currentThread().interrupt();
             throw new IllegalStateException("Crawling interrupted", e);
         } finally {
+            frontier.close();
             pool.shutdown();
+            closePipeline();
+            crawlerList.forEach(Crawler::close);
         }
 
         builder_print(">>> All crawlers finished successfully.");
     }
 
+    /**
+     * Runs every site through one shared {@link CrawlFrontier}, starting a virtual thread for each task.
+     * The frontier's per-host limit and a global in-flight cap of {@code workerCount} bound the fetches,
+     * so no pool has to be sized for the expected number of articles.
+     */
+    private void virtualThreadCrawl() {
+        builder_print("Starting virtual-thread crawling of " + crawlerList.size() + " sites with up to "
+                + workerCount + " fetches in flight (" + perHostConcurrency + " per host).");
+
+        CrawlFrontier frontier = new CrawlFrontier(perHostConcurrency);
+        for (Crawler crawler : crawlerList) {
+            frontier.offer(crawler.seedTask());
+        }
+
+        try (ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Thread dispatcher = Thread.ofPlatform().name("CrawlerDispatcher").start(() -> {
+                try {
+                    frontier.drainConcurrently(fetchers, workerCount);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            if (!dispatcher.join(Duration.ofMinutes(5))) {
+                builder_print("Crawl timed out with pending tasks per host: " + frontier.queueDepths());
+                frontier.close();
+                dispatcher.interrupt();
+                fetchers.shutdownNow();
+                dispatcher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Crawling interrupted", e);
+        } finally {
+            frontier.close();
+            closePipeline();
+            crawlerList.forEach(Crawler::close);
+        }
+
+        builder_print(">>> All crawlers finished successfully.");
+    }
+
+    /** Lets the pipeline write what the fetchers handed it; must run before the crawlers close their batch files. */
+    private void closePipeline() {
+        if (pipeline == null) return;
+        pipeline.close();
+        builder_print("Pipeline: " + pipeline.report());
+    }
+
+    /** Country names of the globe's geometry, so stored articles get a location; null if it cannot be loaded. */
+    @Nullable
+    private static CountryGazetteer loadGazetteer() {
+        try {
+            CountryGazetteer gazetteer = new CountryGazetteer(
+                    WorldGeometry.load(Path.of(WorldGeometry.DEFAULT_BINARY_PATH), "/world.json"));
+            builder_print("Loaded country names for article locations.");
+            return gazetteer;
+        } catch (RuntimeException e) {
+            builder_print("No world geometry (" + e.getMessage() + "), articles will be stored without a location.");
+            return null;
+        }
+    }
+
+    /** The model in {@link global.Constants#EMBEDDING_MODEL_DIR}, or null if none is installed there. */
+    @Nullable
+    private static OnnxEmbeddingModel loadEmbeddingModel() {
+        Path dir = Path.of(EMBEDDING_MODEL_DIR);
+        if (!Files.isDirectory(dir)) {
+            builder_print("No embedding model in " + EMBEDDING_MODEL_DIR + ", articles will not be embedded.");
+            return null;
+        }
+        try {
+            OnnxEmbeddingModel model = OnnxEmbeddingModel.load(dir, EMBEDDING_MAX_TOKENS, EMBEDDING_THREADS);
+            builder_print("Loaded embedding model from " + EMBEDDING_MODEL_DIR + " (" + model.dimension() + " dims).");
+            return model;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load embedding model: " + EMBEDDING_MODEL_DIR, e);
+        }
+    }
+
+    /** Queues the stored articles that have no vector yet, e.g. saved while no model was installed, in the background. */
+    private void backfillEmbeddings() {
+        Thread.ofVirtual().name("EmbeddingBackfill").start(() -> {
+            try {
+                int queued = embedder.backfill(articleStore.recent(ARTICLE_STORE_TTL));
+                if (queued > 0) builder_print("Queued " + queued + " stored articles for embedding.");
+            } catch (IOException e) {
+                builder_print("Failed to read stored articles for embedding: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /** Embeds what the writers handed over; must run after the pipeline is drained. */
+    private void closeEmbedder() {
+        if (embedder == null) return;
+        embedder.close();
+        builder_print("Embeddings: " + embedder.report());
+        try {
+            vectorStore.close();
+        } catch (IOException e) {
+            builder_print("Failed to close vector store: " + e.getMessage());
+        }
+    }
+
+    private void closeArticleStore() {
+        try {
+            articleStore.close();
+            builder_print("Article store saved.");
+        } catch (IOException e) {
+            builder_print("Failed to close article store: " + e.getMessage());
+        }
+    }
+
     public static void builder_print(String msg) {
         System.out.println("[CRAWLER BUILDER] " + msg);
     }
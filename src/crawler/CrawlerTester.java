@@ -11,6 +11,11 @@ import java.util.concurrent.TimeUnit;
 public class CrawlerTester {
     public static void main(String[] args) throws Exception {
 
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            new CrawlerBuilder(Integer.MAX_VALUE, true).startDaemon();
+            return;
+        }
+
         CrawlerBuilder builder = new CrawlerBuilder(100,true);
         builder.startCrawl();
     }
@@ -9,6 +9,7 @@ import java.net.URI;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
@@ -145,6 +146,24 @@ public class CrawlerUtils {
     }
 
 
+    /**
+     * Parses a Retry-After header, given either as delta-seconds or as an HTTP date.
+     * Returns 0 if the header is missing or unreadable.
+     */
+    public static long parseRetryAfterMillis(String header) {
+        if (header == null || header.isBlank()) return 0;
+        header = header.trim();
+        try {
+            if (header.matches("\\d+")) {
+                return Long.parseLong(header) * 1000;
+            }
+            Instant at = ZonedDateTime.parse(header, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Math.max(0, at.toEpochMilli() - System.currentTimeMillis());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
     public static void crawler_info(String msg) {
         System.out.println(CRAWLER_PRINT_PREFIX + msg);
     }
@@ -0,0 +1,88 @@
+package crawler;
+
+import crawlercommons.robots.BaseRobotRules;
+
+import java.util.concurrent.TimeUnit;
+
+import static global.Constants.*;
+
+/**
+ * Token bucket that paces the requests sent to one host.
+ * <p>
+ * The base rate comes from the robots.txt crawl-delay (one request per delay, no burst) or falls back to
+ * {@link global.Constants#DEFAULT_REQUESTS_PER_SECOND_PER_HOST}. A 429/503 answer halves the current rate and
+ * pauses the host; every successful fetch then adds back a tenth of the base rate until it is reached again.
+ * <p>
+ * Not thread-safe: the {@link CrawlFrontier} only touches it while holding its own lock.
+ */
+public final class HostRateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double baseRate;   // tokens per second
+    private final double burst;      // bucket capacity
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    HostRateLimiter(double ratePerSecond, double burst, long now) {
+        this.baseRate = ratePerSecond;
+        this.rate = ratePerSecond;
+        this.burst = burst;
+        this.tokens = 1; // the first request may go out immediately
+        this.lastRefill = now;
+        this.pausedUntil = now;
+    }
+
+    /** Limiter honoring the crawl-delay of {@code rules}, or the default rate if none is set. */
+    static HostRateLimiter forRules(BaseRobotRules rules, long now) {
+        long delayMs = rules == null ? BaseRobotRules.UNSET_CRAWL_DELAY : rules.getCrawlDelay();
+        if (delayMs > 0) {
+            return new HostRateLimiter(1000.0 / delayMs, 1, now);
+        }
+        return new HostRateLimiter(DEFAULT_REQUESTS_PER_SECOND_PER_HOST, DEFAULT_HOST_BURST, now);
+    }
+
+    /** Takes a token if one is available at {@code now}. */
+    boolean tryAcquire(long now) {
+        refill(now);
+        if (now < pausedUntil || tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /** Nanoseconds from {@code now} until {@link #tryAcquire} can succeed; 0 if it already can. */
+    long nanosUntilAvailable(long now) {
+        refill(now);
+        long pause = Math.max(0, pausedUntil - now);
+        long refillWait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate * NANOS_PER_SECOND);
+        return Math.max(pause, refillWait);
+    }
+
+    /** The host answered 429/503: back off multiplicatively and wait at least {@code retryAfterNanos}. */
+    void onThrottled(long retryAfterNanos, long now) {
+        refill(now);
+        rate = Math.max(baseRate * MIN_HOST_RATE_FRACTION, rate / 2);
+        tokens = 0;
+        long backoff = Math.max(retryAfterNanos, (long) (NANOS_PER_SECOND / rate));
+        pausedUntil = Math.max(pausedUntil, now + backoff);
+    }
+
+    /** A request went through: recover additively towards the base rate. */
+    void onSuccess(long now) {
+        refill(now);
+        rate = Math.min(baseRate, rate + baseRate / 10);
+    }
+
+    double currentRate() {
+        return rate;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) return;
+        tokens = Math.min(burst, tokens + rate * elapsed / NANOS_PER_SECOND);
+        lastRefill = now;
+    }
+}
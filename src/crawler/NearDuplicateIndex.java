@@ -0,0 +1,258 @@
+package crawler;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe, fixed-size index of recently saved articles by their text, used to collapse the same story published
+ * by several sites (or by one site under several URLs) before it is stored.
+ * <p>
+ * Title and body are lower-cased and cut into overlapping runs of {@value #SHINGLE_WORDS} words. An article's MinHash
+ * signature keeps, for each of {@value #HASHES} hash functions, the smallest hash of any of its shingles; the share of
+ * positions on which two signatures agree estimates the Jaccard similarity of their shingle sets. Candidates are found
+ * with LSH banding: the signature is split into {@value #BANDS} bands of {@value #ROWS} rows and only articles equal
+ * on at least one whole band are compared, so a lookup touches a handful of entries instead of the whole index while
+ * pairs at the default threshold are still found with near certainty.
+ * <p>
+ * Entries live in a ring of {@code capacity} slots, each new article replacing the oldest once it is full. Every band
+ * keeps a fixed table of bucket heads, and each entry links to the next older entry of its bucket by sequence number;
+ * a chain simply ends at the first entry whose slot has been reused since, so eviction never unlinks anything.
+ */
+public final class NearDuplicateIndex {
+
+    static final int HASHES = 64;
+    static final int BANDS = 16;
+    static final int ROWS = HASHES / BANDS;
+    private static final int SHINGLE_WORDS = 3;
+    private static final long NONE = -1;
+
+    // hash function i maps a shingle hash h to the top half of h * MUL[i] + ADD[i]; odd multipliers keep it a bijection
+    private static final long[] MUL = new long[HASHES];
+    private static final long[] ADD = new long[HASHES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4d696e48617368L);
+        for (int i = 0; i < HASHES; i++) {
+            MUL[i] = random.nextLong() | 1;
+            ADD[i] = random.nextLong();
+        }
+    }
+
+    /** The indexed article a new one duplicates, and their estimated similarity. */
+    public record Match(String id, String url, double similarity) {}
+
+    private final int capacity;
+    private final double threshold;
+    private final int minWords;
+
+    private final int[] signatures; // HASHES per slot
+    private final String[] ids;
+    private final String[] urls;
+    private final long[] next;      // BANDS per slot: sequence number of the next older entry in the same bucket
+    private final long[] heads;     // bucketsPerBand per band: sequence number of the bucket's newest entry
+    private final int bucketMask;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nextSeq;           // guarded by lock
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * Index remembering the last {@code capacity} articles. Two articles are duplicates when their estimated
+     * similarity is at least {@code threshold}; articles shorter than {@code minWords} words are never compared,
+     * since a few shared words say little about short texts.
+     */
+    public NearDuplicateIndex(int capacity, double threshold, int minWords) {
+        if (capacity < 1 || threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("Near-duplicate capacity must be >= 1 and threshold in (0, 1].");
+        }
+        this.capacity = capacity;
+        this.threshold = threshold;
+        this.minWords = Math.max(SHINGLE_WORDS, minWords);
+        this.signatures = new int[capacity * HASHES];
+        this.ids = new String[capacity];
+        this.urls = new String[capacity];
+        this.next = new long[capacity * BANDS];
+        int bucketsPerBand = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        this.bucketMask = bucketsPerBand - 1;
+        this.heads = new long[bucketsPerBand * BANDS];
+        Arrays.fill(heads, NONE);
+    }
+
+    /** The MinHash signature of an article, or null if it has too few words to be compared. Needs no lock. */
+    @Nullable
+    public int[] signature(String title, String body) {
+        int[] sig = new int[HASHES];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        long[] window = new long[SHINGLE_WORDS];
+        int words = 0;
+        words = shingle(title == null ? "" : title, sig, window, words);
+        words = shingle(body == null ? "" : body, sig, window, words);
+        return words < minWords ? null : sig;
+    }
+
+    /**
+     * Returns the most similar indexed article if {@code signature} duplicates one; otherwise indexes it under
+     * {@code id} and {@code url} and returns null. Of several concurrent calls with near-identical signatures, exactly
+     * one indexes its article.
+     * <p>
+     * Entries indexed under the same {@code id} never count: a page fetched again because it changed is a new
+     * version of that article, not a copy of it, and is indexed next to the old version.
+     */
+    @Nullable
+    public Match addIfNew(int[] signature, String id, String url) {
+        lock.lock();
+        try {
+            Match match = find(signature, id);
+            if (match != null) {
+                duplicates.incrementAndGet();
+                return match;
+            }
+            insert(signature, id, url);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of articles currently indexed. */
+    public int size() {
+        lock.lock();
+        try {
+            return (int) Math.min(nextSeq, capacity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of duplicates reported by {@link #addIfNew} so far. */
+    public long duplicates() {
+        return duplicates.get();
+    }
+
+    //===========================================
+    // Signatures
+    //===========================================
+
+    /** Feeds the words of {@code text} into {@code sig}, continuing the shingle in {@code window}; returns the word count. */
+    private static int shingle(String text, int[] sig, long[] window, int words) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            // FNV-1a over the lower-cased code points of one word
+            long h = 0xcbf29ce484222325L;
+            while (i < n) {
+                cp = text.codePointAt(i);
+                if (!Character.isLetterOrDigit(cp)) break;
+                h = (h ^ Character.toLowerCase(cp)) * 0x100000001b3L;
+                i += Character.charCount(cp);
+            }
+            window[words % SHINGLE_WORDS] = h;
+            words++;
+            if (words >= SHINGLE_WORDS) {
+                update(sig, shingleHash(window, words));
+            }
+        }
+        return words;
+    }
+
+    // combines the last SHINGLE_WORDS words in order, oldest first
+    private static long shingleHash(long[] window, int words) {
+        long h = 0;
+        for (int k = 0; k < SHINGLE_WORDS; k++) {
+            h = Long.rotateLeft(h, 23) ^ window[(words + k) % SHINGLE_WORDS];
+        }
+        return mix(h);
+    }
+
+    private static void update(int[] sig, long h) {
+        for (int i = 0; i < HASHES; i++) {
+            int v = (int) ((h * MUL[i] + ADD[i]) >>> 32);
+            if (v < sig[i]) sig[i] = v;
+        }
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    //===========================================
+    // LSH buckets
+    //===========================================
+
+    private Match find(int[] sig, String id) {
+        int best = -1;
+        int bestAgreeing = 0;
+        for (int b = 0; b < BANDS; b++) {
+            for (long seq = heads[b * (bucketMask + 1) + bucket(sig, b)]; live(seq); seq = next[slot(seq) * BANDS + b]) {
+                int slot = slot(seq);
+                // different band values can hash to one bucket, so check the band itself before the whole signature
+                if (!bandEquals(sig, slot, b)) continue;
+                if (id.equals(ids[slot])) continue;
+                int agreeing = agreeing(sig, slot);
+                if (agreeing > bestAgreeing) {
+                    best = slot;
+                    bestAgreeing = agreeing;
+                }
+            }
+        }
+        double similarity = (double) bestAgreeing / HASHES;
+        return best >= 0 && similarity >= threshold ? new Match(ids[best], urls[best], similarity) : null;
+    }
+
+    private void insert(int[] sig, String id, String url) {
+        long seq = nextSeq++;
+        int slot = slot(seq);
+        System.arraycopy(sig, 0, signatures, slot * HASHES, HASHES);
+        ids[slot] = id;
+        urls[slot] = url;
+        for (int b = 0; b < BANDS; b++) {
+            int head = b * (bucketMask + 1) + bucket(sig, b);
+            next[slot * BANDS + b] = heads[head];
+            heads[head] = seq;
+        }
+    }
+
+    /** True while the entry numbered {@code seq} still owns its slot. */
+    private boolean live(long seq) {
+        return seq != NONE && seq >= nextSeq - capacity;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private int bucket(int[] sig, int band) {
+        long h = band;
+        for (int r = 0; r < ROWS; r++) {
+            h = h * 0x9e3779b97f4a7c15L + sig[band * ROWS + r];
+        }
+        return (int) mix(h) & bucketMask;
+    }
+
+    private boolean bandEquals(int[] sig, int slot, int band) {
+        int from = band * ROWS;
+        return Arrays.equals(sig, from, from + ROWS, signatures, slot * HASHES + from, slot * HASHES + from + ROWS);
+    }
+
+    private int agreeing(int[] sig, int slot) {
+        int base = slot * HASHES;
+        int n = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (sig[i] == signatures[base + i]) n++;
+        }
+        return n;
+    }
+}
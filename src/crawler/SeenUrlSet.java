@@ -0,0 +1,327 @@
+package crawler;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe, fixed-size set of URLs the crawler has already seen.
+ * <p>
+ * URLs are never stored as strings. Each one is hashed once with 128-bit MurmurHash3; the first half is its
+ * 64-bit fingerprint, kept in a lock-free open-addressing table, and both halves drive a Bloom filter that sits in
+ * front of the table so most unseen URLs are rejected without probing it. At the default sizing a URL costs about
+ * 12 bits of filter plus 8-16 bytes of table, so a million URLs fit in roughly 18 MB.
+ * <p>
+ * The set is bounded: once the table reaches its load limit new fingerprints are only recorded in the Bloom filter,
+ * which keeps answering (with its small false-positive rate) instead of growing; a long-running crawl {@link #clear()}s
+ * it now and then so it never gets there. The storage can live on the heap, in a direct buffer, or in a memory-mapped
+ * file so a long-running crawler keeps its memory across restarts.
+ * <p>
+ * The crawler records a URL only once it is done with it. Until then the URL is {@link #claim claimed}: queued or
+ * in flight, which keeps other links to it from queuing it again. A claim ends with {@link #complete} when the URL
+ * needs no further fetch, or with {@link #release} when the fetch failed and a later link may try again.
+ */
+public final class SeenUrlSet implements AutoCloseable {
+
+    private static final int BLOOM_BITS_PER_ENTRY = 12;
+    private static final int BLOOM_HASHES = 8;
+    private static final double MAX_LOAD = 0.75;
+    private static final long EMPTY = 0;
+
+    // file header: magic, version, bloomWords, tableSlots, size
+    private static final int MAGIC = 0x5345454e; // "SEEN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private final Slots bloom;
+    private final Slots table;
+    private final long bloomBits;
+    private final long tableMask;
+    private final long maxEntries;
+    private final AtomicLong size;
+    private final MappedByteBuffer mapped; // non-null when file-backed
+    // fingerprints of claimed URLs; as many as the crawl has queued and in flight
+    private final Set<Long> claimed = ConcurrentHashMap.newKeySet();
+
+    private SeenUrlSet(Slots bloom, Slots table, long tableSlots, long size, MappedByteBuffer mapped) {
+        this.bloom = bloom;
+        this.table = table;
+        this.bloomBits = bloom.length() * 64;
+        this.tableMask = tableSlots - 1;
+        this.maxEntries = (long) (tableSlots * MAX_LOAD);
+        this.size = new AtomicLong(size);
+        this.mapped = mapped;
+    }
+
+    /** On-heap set sized for {@code expectedUrls} exact entries. */
+    public SeenUrlSet(long expectedUrls) {
+        this(new HeapSlots(bloomWords(expectedUrls)), new HeapSlots(tableSlots(expectedUrls)),
+                tableSlots(expectedUrls), 0, null);
+    }
+
+    /** Off-heap set in a direct buffer, invisible to the garbage collector. */
+    public static SeenUrlSet offHeap(long expectedUrls) {
+        int bloomWords = bloomWords(expectedUrls);
+        int tableSlots = tableSlots(expectedUrls);
+        ByteBuffer buf = ByteBuffer.allocateDirect((bloomWords + tableSlots) * Long.BYTES);
+        return new SeenUrlSet(new DirectSlots(buf, 0, bloomWords), new DirectSlots(buf, bloomWords * Long.BYTES, tableSlots),
+                tableSlots, 0, null);
+    }
+
+    /**
+     * Set backed by a memory-mapped file. An existing file is reopened with its contents (its own sizing wins over
+     * {@code expectedUrls}); otherwise a new one is created. Call {@link #close()} to persist the entry count.
+     */
+    public static SeenUrlSet mapped(Path file, long expectedUrls) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        boolean existed = Files.exists(file) && Files.size(file) >= HEADER_BYTES;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            int bloomWords;
+            int tableSlots;
+            long size = 0;
+            if (existed) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+                ch.read(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not a seen-URL file: " + file);
+                }
+                bloomWords = (int) header.getLong();
+                tableSlots = (int) header.getLong();
+                size = header.getLong();
+            } else {
+                bloomWords = bloomWords(expectedUrls);
+                tableSlots = tableSlots(expectedUrls);
+            }
+
+            long bytes = HEADER_BYTES + (long) (bloomWords + tableSlots) * Long.BYTES;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buf.order(ByteOrder.nativeOrder());
+            if (!existed) {
+                buf.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, bloomWords).putLong(16, tableSlots);
+            }
+            return new SeenUrlSet(new DirectSlots(buf, HEADER_BYTES, bloomWords),
+                    new DirectSlots(buf, HEADER_BYTES + bloomWords * Long.BYTES, tableSlots), tableSlots, size, buf);
+        }
+    }
+
+    /**
+     * Records {@code url} and returns true if it was not seen before. Exactly one of several threads adding the
+     * same URL concurrently gets true.
+     */
+    public boolean add(String url) {
+        long[] h = MurmurHash3.hash128x64(url.getBytes(StandardCharsets.UTF_8));
+        long fp = fingerprint(h);
+
+        if (mightContain(h) && tableContains(fp)) return false;
+
+        if (size.get() < maxEntries) {
+            if (!tableInsert(fp)) return false;
+            setBloomBits(h);
+            size.incrementAndGet();
+            return true;
+        }
+        // table full: degrade to the Bloom filter alone
+        return setBloomBits(h);
+    }
+
+    public boolean contains(String url) {
+        long[] h = MurmurHash3.hash128x64(url.getBytes(StandardCharsets.UTF_8));
+        return contains(h, fingerprint(h));
+    }
+
+    /**
+     * Claims {@code url} for the calling crawler and returns true if it was neither seen nor claimed before. Exactly
+     * one of several threads claiming the same URL concurrently gets true.
+     */
+    public boolean claim(String url) {
+        long[] h = MurmurHash3.hash128x64(url.getBytes(StandardCharsets.UTF_8));
+        long fp = fingerprint(h);
+        return !contains(h, fp) && claimed.add(fp);
+    }
+
+    /** Records a claimed {@code url} as seen and ends the claim. */
+    public void complete(String url) {
+        add(url);
+        claimed.remove(fingerprint(MurmurHash3.hash128x64(url.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /** Ends the claim on {@code url} without recording it, so it can be claimed again. */
+    public void release(String url) {
+        claimed.remove(fingerprint(MurmurHash3.hash128x64(url.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Forgets every seen URL; claims stay. Adds running concurrently may be lost, which only means their URLs can be
+     * claimed again.
+     */
+    public void clear() {
+        bloom.clear();
+        table.clear();
+        size.set(0);
+    }
+
+    /** Number of exact fingerprints stored. */
+    public long size() {
+        return size.get();
+    }
+
+    /** Bytes of storage held by the filter and the table. */
+    public long footprintBytes() {
+        return (bloom.length() + table.length()) * Long.BYTES;
+    }
+
+    @Override
+    public void close() {
+        if (mapped != null) {
+            mapped.putLong(24, size.get());
+            mapped.force();
+        }
+    }
+
+    private boolean contains(long[] h, long fp) {
+        if (!mightContain(h)) return false;
+        return tableContains(fp) || size.get() >= maxEntries;
+    }
+
+    private static long fingerprint(long[] h) {
+        return h[0] == EMPTY ? 1 : h[0];
+    }
+
+    //===========================================
+    // Bloom filter
+    //===========================================
+
+    private boolean mightContain(long[] h) {
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = bloomIndex(h, i);
+            if ((bloom.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Sets all bits of {@code h}; returns true if at least one was still clear. */
+    private boolean setBloomBits(long[] h) {
+        boolean changed = false;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = bloomIndex(h, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old;
+            do {
+                old = bloom.get(word);
+                if ((old & mask) != 0) break;
+            } while (!bloom.compareAndSet(word, old, old | mask));
+            if ((old & mask) == 0) changed = true;
+        }
+        return changed;
+    }
+
+    // Kirsch-Mitzenmacher: the i-th index is h1 + i * h2
+    private long bloomIndex(long[] h, int i) {
+        return Long.remainderUnsigned(h[0] + i * h[1], bloomBits);
+    }
+
+    //===========================================
+    // Fingerprint table (linear probing, insert-only)
+    //===========================================
+
+    private boolean tableContains(long fp) {
+        for (long i = mix(fp) & tableMask; ; i = (i + 1) & tableMask) {
+            long cur = table.get((int) i);
+            if (cur == fp) return true;
+            if (cur == EMPTY) return false;
+        }
+    }
+
+    /** Returns false if {@code fp} was already present. */
+    private boolean tableInsert(long fp) {
+        for (long i = mix(fp) & tableMask; ; i = (i + 1) & tableMask) {
+            long cur = table.get((int) i);
+            if (cur == fp) return false;
+            if (cur == EMPTY) {
+                if (table.compareAndSet((int) i, EMPTY, fp)) return true;
+                if (table.get((int) i) == fp) return false;
+                // lost the slot to another fingerprint, keep probing
+            }
+        }
+    }
+
+    private static long mix(long fp) {
+        // the fingerprint's low bits also feed the Bloom filter; scramble before using them as the slot
+        fp ^= fp >>> 33;
+        fp *= 0xff51afd7ed558ccdL;
+        return fp ^ (fp >>> 33);
+    }
+
+    private static int bloomWords(long expected) {
+        long bits = Math.max(64, expected * BLOOM_BITS_PER_ENTRY);
+        return (int) Math.min(1 << 26, (bits + 63) / 64);
+    }
+
+    private static int tableSlots(long expected) {
+        long slots = Long.highestOneBit(Math.max(16, (long) (expected / MAX_LOAD)) - 1) << 1;
+        // both caps together keep every byte offset within an int, as ByteBuffer requires
+        return (int) Math.min(1 << 27, slots);
+    }
+
+    //===========================================
+    // Storage
+    //===========================================
+
+    private interface Slots {
+        long get(int i);
+        boolean compareAndSet(int i, long expect, long update);
+        long length();
+        void clear();
+    }
+
+    private static final class HeapSlots implements Slots {
+        private final AtomicLongArray words;
+
+        HeapSlots(int n) {
+            this.words = new AtomicLongArray(n);
+        }
+
+        public long get(int i) { return words.get(i); }
+        public boolean compareAndSet(int i, long e, long u) { return words.compareAndSet(i, e, u); }
+        public long length() { return words.length(); }
+        public void clear() { for (int i = 0; i < words.length(); i++) words.set(i, EMPTY); }
+    }
+
+    private static final class DirectSlots implements Slots {
+        private static final VarHandle LONGS =
+                MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+        private final ByteBuffer buf;
+        private final int offset;
+        private final int n;
+
+        DirectSlots(ByteBuffer buf, int offset, int n) {
+            this.buf = buf;
+            this.offset = offset;
+            this.n = n;
+        }
+
+        public long get(int i) { return (long) LONGS.getVolatile(buf, offset + i * Long.BYTES); }
+        public boolean compareAndSet(int i, long e, long u) { return LONGS.compareAndSet(buf, offset + i * Long.BYTES, e, u); }
+        public long length() { return n; }
+        public void clear() { for (int i = 0; i < n; i++) LONGS.setVolatile(buf, offset + i * Long.BYTES, EMPTY); }
+    }
+}
@@ -1,5 +1,6 @@
 package global;
 
+import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
@@ -19,8 +20,101 @@ public final class Constants {
 
     public static final String SITE_CONFIG_PREFIX = "[SITE_CONFIG]";
 
+    public static final String CRAWL_STATE_PREFIX = "[CRAWL_STATE]";
+
     public static final String ARTICLE_DIR = "data/articles/";
 
+    public static final String ARTICLE_STORE_PREFIX = "[ARTICLE_STORE]";
+
+    // embedded article store, partitioned by crawl time; a partition is deleted once it ended more than the TTL ago
+    public static final String ARTICLE_STORE_DIR = "data/store/";
+    public static final Duration ARTICLE_STORE_PARTITION = Duration.ofHours(1);
+    public static final Duration ARTICLE_STORE_TTL = Duration.ofDays(1);
+
+    // edge length of the lat/lon cells the article store indexes located articles by
+    public static final double ARTICLE_STORE_GEO_CELL_DEG = 1.0;
+
+    // characters of the body searched for a country name when the title names none
+    public static final int ARTICLE_LOCATION_BODY_LEAD = 500;
+
+    public static final String EMBEDDING_PREFIX = "[EMBEDDING]";
+
+    // sentence-embedding model (a BERT-style ONNX export next to its WordPiece vocab.txt) and where its vectors go
+    public static final String EMBEDDING_MODEL_DIR = "models/embedding/";
+    public static final String EMBEDDING_DIR = "data/embeddings/";
+
+    // tokens per article the model sees (title first, then body), and the inference batching of the embedder
+    public static final int EMBEDDING_MAX_TOKENS = 256;
+    public static final int EMBEDDING_BATCH_SIZE = 16;
+    public static final Duration EMBEDDING_BATCH_WAIT = Duration.ofMillis(500);
+    public static final int EMBEDDING_QUEUE_CAPACITY = 1024;
+    public static final int EMBEDDING_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    // append-only log of what earlier runs fetched (ids, fetch times, ETag / Last-Modified)
+    public static final String CRAWL_STATE_FILE = "data/crawl/state.jsonl";
+
+    // crawl-state entries not refreshed for this long are dropped when the log is opened
+    public static final Duration CRAWL_STATE_RETENTION = Duration.ofDays(30);
+
+    // an article fetched more recently than this is skipped; older ones get a conditional GET
+    public static final Duration ARTICLE_RECHECK_INTERVAL = Duration.ofMinutes(30);
+
+    // global number of crawl workers shared by all sites of a concurrent run
+    public static final int DEFAULT_CRAWL_WORKERS = 16;
+
+    // global cap on simultaneous fetches when every fetch gets its own virtual thread
+    public static final int DEFAULT_MAX_IN_FLIGHT_FETCHES = 256;
+
+    // max number of simultaneous fetches against a single host
+    public static final int DEFAULT_PER_HOST_CONCURRENCY = 4;
+
+    // request rate and burst for hosts whose robots.txt sets no crawl-delay
+    public static final double DEFAULT_REQUESTS_PER_SECOND_PER_HOST = 2.0;
+    public static final double DEFAULT_HOST_BURST = 2.0;
+
+    // a throttled host is never slowed below this fraction of its base rate
+    public static final double MIN_HOST_RATE_FRACTION = 1.0 / 32;
+
+    // number of article URLs a seen-URL set remembers exactly before degrading to its Bloom filter
+    public static final long DEFAULT_SEEN_URL_CAPACITY = 1 << 20;
+
+    // near-duplicate detection: articles remembered across all sites, the estimated text similarity from which two
+    // count as the same story, and the fewest words an article needs before it is compared at all
+    public static final int NEAR_DUPLICATE_CAPACITY = 1 << 15;
+    public static final double NEAR_DUPLICATE_SIMILARITY = 0.7;
+    public static final int NEAR_DUPLICATE_MIN_WORDS = 40;
+
+    // revisit bounds of a topic page in daemon mode, and the interval a newly found topic starts with
+    public static final Duration DAEMON_MIN_TOPIC_INTERVAL = Duration.ofMinutes(1);
+    public static final Duration DAEMON_MAX_TOPIC_INTERVAL = Duration.ofHours(1);
+    public static final Duration DAEMON_INITIAL_TOPIC_INTERVAL = Duration.ofMinutes(5);
+
+    // how often the daemon flushes batch files and crawl state, and logs its status
+    public static final Duration DAEMON_FLUSH_INTERVAL = Duration.ofSeconds(10);
+    public static final Duration DAEMON_STATUS_INTERVAL = Duration.ofMinutes(1);
+
+    // how often a URL answered with 429/503 is queued again before giving up
+    public static final int MAX_FETCH_RETRIES = 3;
+
+    // workers of the article pipeline stages behind the fetchers, and the bounded queue in front of each stage
+    public static final int PIPELINE_PARSE_WORKERS = Runtime.getRuntime().availableProcessors();
+    public static final int PIPELINE_SERIALIZE_WORKERS = 2;
+    public static final int PIPELINE_WRITE_WORKERS = 1;
+    public static final int PIPELINE_QUEUE_CAPACITY = 256;
+
+    // JSONL batch files: how often buffered lines are written (and fsynced), and when a new part file is started
+    public static final Duration BATCH_COMMIT_INTERVAL = Duration.ofSeconds(1);
+    public static final boolean BATCH_FSYNC = true;
+    public static final long BATCH_MAX_FILE_BYTES = 256L << 20;
+    public static final Duration BATCH_MAX_FILE_AGE = Duration.ofHours(1);
+
+    // buffered bytes at which an appender commits right away instead of waiting for the interval
+    public static final int BATCH_GROUP_COMMIT_BYTES = 1 << 20;
+
+    // a Parquet batch file starts a new row group after this many rows or bytes of field text
+    public static final int PARQUET_ROW_GROUP_ROWS = 1024;
+    public static final long PARQUET_ROW_GROUP_BYTES = 16L << 20;
+
     // enum for predefined and supported file formats
 
     public enum FileFormat {
@@ -35,6 +129,25 @@ public final class Constants {
         }
     }
 
+    // how a concurrent crawl runs its fetches
+    public enum FetchMode {
+        // fixed pool of platform worker threads
+        PLATFORM_THREADS,
+        // one virtual thread per fetch, bounded only by the in-flight and per-host limits
+        VIRTUAL_THREADS
+    }
+
+    // how article pages are turned into Article records
+    public enum ExtractionMode {
+        // build the full DOM, then run the selectors
+        DOM,
+        // run the selectors while the page streams in and drop subtrees no selector can need
+        STREAMING
+    }
+
+    // streaming keeps less of the page alive but allocates a few percent more per page, so it is opt-in
+    public static final ExtractionMode DEFAULT_EXTRACTION_MODE = ExtractionMode.DOM;
+
     // FORMATTERS
     //timestamp formatter for file name
     public static final DateTimeFormatter batchFileTimeStampFormatter = DateTimeFormatter.ofPattern("yyyy'Y'MM'M'dd'D'_HH'h'mm'm'ss's'",Locale.ROOT)
@@ -0,0 +1,35 @@
+package main.newsmap.geo;
+
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Border meshes at several levels of detail sharing one {@link MeshView}.
+ * The view shows the coarsest level whose camera threshold the current zoom has passed.
+ */
+public class BorderLod {
+    private final MeshView view;
+    private final TriangleMesh[] levels;
+    private final double[] minCameraZ;
+    private int current = 0;
+
+    BorderLod(MeshView view, TriangleMesh[] levels, double[] minCameraZ) {
+        this.view = view;
+        this.levels = levels;
+        this.minCameraZ = minCameraZ;
+    }
+
+    public void updateForCameraZ(double cameraZ) {
+        int level = levels.length - 1;
+        for (int i = 0; i < levels.length; i++) {
+            if (cameraZ >= minCameraZ[i]) { level = i; break; }
+        }
+        if (level != current) {
+            current = level;
+            view.setMesh(levels[level]);
+        }
+    }
+
+    public MeshView getView() { return view; }
+    public int getLevel() { return current; }
+}
@@ -1,59 +1,92 @@
 package main.newsmap.geo;
 
-import javafx.geometry.Point3D;
 import javafx.scene.shape.TriangleMesh;
-import java.util.ArrayList;
-import java.util.List;
 
+import java.util.Arrays;
 
+/**
+ * Accumulates border vertices and quads into growable primitive buffers and hands them to a
+ * {@link TriangleMesh} in one bulk copy. Size it with the expected vertex and quad counts so
+ * the buffers never have to grow while the borders are generated. Quads refer to vertices by
+ * index, so neighbouring quads can share them.
+ */
 public class BorderMeshBuilder {
+    private static final int INTS_PER_QUAD = 2 * 3 * 2;
 
-    private final List<Float> pts = new ArrayList<>();
-    private final List<Integer> faces = new ArrayList<>();
+    private float[] pts;
+    private int[] faces;
+    private int ptsSize = 0;
+    private int facesSize = 0;
 
-    private int addPoint(Point3D p) {
-        int idx = pts.size() / 3;
-        pts.add((float) p.getX());
-        pts.add((float) p.getY());
-        pts.add((float) p.getZ());
-        return idx;
+    public BorderMeshBuilder() {
+        this(1024, 512);
     }
 
-    public void addQuad(Point3D aUp, Point3D bUp, Point3D bDn, Point3D aDn) {
-        int i0 = addPoint(aUp);
-        int i1 = addPoint(bUp);
-        int i2 = addPoint(bDn);
-        int i3 = addPoint(aDn);
+    public BorderMeshBuilder(int expectedPoints, int expectedQuads) {
+        pts = new float[Math.max(1, expectedPoints) * 3];
+        faces = new int[Math.max(1, expectedQuads) * INTS_PER_QUAD];
+    }
 
-        faces.add(i0); faces.add(0);
-        faces.add(i1); faces.add(0);
-        faces.add(i2); faces.add(0);
+    /** Adds a vertex and returns its index for {@link #addQuad(int, int, int, int)}. */
+    public int addPoint(double x, double y, double z) {
+        if (ptsSize + 3 > pts.length) pts = Arrays.copyOf(pts, pts.length * 2);
+        int idx = ptsSize / 3;
+        pts[ptsSize++] = (float) x;
+        pts[ptsSize++] = (float) y;
+        pts[ptsSize++] = (float) z;
+        return idx;
+    }
 
+    private void addTriangle(int a, int b, int c) {
+        if (facesSize + 6 > faces.length) faces = Arrays.copyOf(faces, faces.length * 2);
+        faces[facesSize++] = a; faces[facesSize++] = 0;
+        faces[facesSize++] = b; faces[facesSize++] = 0;
+        faces[facesSize++] = c; faces[facesSize++] = 0;
+    }
 
-        faces.add(i0); faces.add(0);
-        faces.add(i2); faces.add(0);
-        faces.add(i3); faces.add(0);
+    public void addQuad(int aUp, int bUp, int bDn, int aDn) {
+        addTriangle(aUp, bUp, bDn);
+        addTriangle(aUp, bDn, aDn);
     }
 
     public TriangleMesh buildMesh() {
         TriangleMesh mesh = new TriangleMesh();
-
-        float[] pointsArray = new float[pts.size()];
-        for (int i = 0; i < pts.size(); i++) {
-            pointsArray[i] = pts.get(i);
-        }
-        mesh.getPoints().addAll(pointsArray);
-
-
+        mesh.getPoints().setAll(pts, 0, ptsSize);
         mesh.getTexCoords().addAll(0f, 0f);
+        mesh.getFaces().setAll(faces, 0, facesSize);
+        return mesh;
+    }
 
-        int[] facesArray = new int[faces.size()];
-        for (int i = 0; i < faces.size(); i++) {
-            facesArray[i] = faces.get(i);
+    /**
+     * Concatenates partial builders, in order, into one mesh. The face indices of each part
+     * are shifted by the number of vertices in the parts before it.
+     */
+    public static TriangleMesh buildMesh(BorderMeshBuilder[] parts) {
+        int totalPts = 0, totalFaces = 0;
+        for (BorderMeshBuilder part : parts) {
+            totalPts += part.ptsSize;
+            totalFaces += part.facesSize;
+        }
+        float[] allPts = new float[totalPts];
+        int[] allFaces = new int[totalFaces];
+
+        int ptsOffset = 0, facesOffset = 0;
+        for (BorderMeshBuilder part : parts) {
+            System.arraycopy(part.pts, 0, allPts, ptsOffset, part.ptsSize);
+            int vertexOffset = ptsOffset / 3;
+            // faces are (point, texCoord) pairs; only the point index moves
+            for (int i = 0; i < part.facesSize; i += 2) {
+                allFaces[facesOffset + i] = part.faces[i] + vertexOffset;
+                allFaces[facesOffset + i + 1] = part.faces[i + 1];
+            }
+            ptsOffset += part.ptsSize;
+            facesOffset += part.facesSize;
         }
-        mesh.getFaces().addAll(facesArray);
 
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(allPts);
+        mesh.getTexCoords().addAll(0f, 0f);
+        mesh.getFaces().setAll(allFaces);
         return mesh;
     }
 }
-
@@ -6,72 +6,156 @@ import javafx.scene.paint.PhongMaterial;
 import javafx.scene.paint.Color;
 import javafx.scene.DepthTest;
 import javafx.scene.shape.CullFace;
-import javafx.geometry.Point3D;
 
 import org.json.JSONArray;
-import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import main.newsmap.util.CoordinateUtils;
 
 public class BorderMeshFactory {
 
+    // Douglas-Peucker tolerance (degrees) of each level of detail, finest first
+    static final double[] LOD_TOLERANCES_DEG = { 0.0, 0.08, 0.3 };
+    // level i is shown while the camera is at or in front of LOD_CAMERA_Z[i]
+    static final double[] LOD_CAMERA_Z = { -1100, -1800, Double.NEGATIVE_INFINITY };
+
+    private static final double RADIUS_OFFSET = 0.5;
+    private static final double HALF_WIDTH = 0.2;
+    // below this many vertices per chunk the fork overhead outweighs the parallel work
+    private static final int MIN_CHUNK_VERTICES = 8_000;
+
     public static MeshView buildFromFeatures(JSONArray features, double earthRadius) {
-        BorderMeshBuilder builder = new BorderMeshBuilder();
-        double radius = earthRadius + 0.5;
-        double halfWidth = 0.2;
+        return buildFromGeometry(WorldGeometry.fromFeatures(features), earthRadius);
+    }
+
+    public static MeshView buildFromGeometry(WorldGeometry geometry, double earthRadius) {
+        return styled(new MeshView(buildMesh(geometry, earthRadius, 0.0)));
+    }
+
+    /** Builds every level of detail up front so zooming only has to swap meshes. */
+    public static BorderLod buildLod(WorldGeometry geometry, double earthRadius) {
+        TriangleMesh[] levels = new TriangleMesh[LOD_TOLERANCES_DEG.length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = buildMesh(geometry, earthRadius, LOD_TOLERANCES_DEG[i]);
+        }
+        return new BorderLod(styled(new MeshView(levels[0])), levels, LOD_CAMERA_Z);
+    }
+
+    public static TriangleMesh buildMesh(WorldGeometry geometry, double earthRadius, double toleranceDeg) {
+        return buildMesh(geometry, earthRadius, toleranceDeg, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Splits the rings into chunks of roughly equal vertex count and builds each chunk into its
+     * own buffers on the given pool. The partial buffers are joined into a single mesh at the end,
+     * so the caller (typically a background loader) only receives the finished {@link TriangleMesh}.
+     */
+    public static TriangleMesh buildMesh(WorldGeometry geometry, double earthRadius, double toleranceDeg,
+                                         ForkJoinPool pool) {
+        int[] chunkStart = splitRings(geometry, pool.getParallelism());
+        BorderMeshBuilder[] parts = new BorderMeshBuilder[chunkStart.length - 1];
+        double radius = earthRadius + RADIUS_OFFSET;
+        pool.invoke(new RingChunkTask(geometry, radius, toleranceDeg, chunkStart, parts, 0, parts.length));
+        return BorderMeshBuilder.buildMesh(parts);
+    }
+
+    /** Builds the chunks [from, to), forking halves until a single chunk is left. */
+    @SuppressWarnings("serial") // ForkJoinTask is Serializable, but these tasks only ever live in one build
+    private static final class RingChunkTask extends RecursiveAction {
+        private final WorldGeometry geometry;
+        private final double radius, toleranceDeg;
+        private final int[] chunkStart;
+        private final BorderMeshBuilder[] parts;
+        private final int from, to;
+
+        RingChunkTask(WorldGeometry geometry, double radius, double toleranceDeg,
+                      int[] chunkStart, BorderMeshBuilder[] parts, int from, int to) {
+            this.geometry = geometry;
+            this.radius = radius;
+            this.toleranceDeg = toleranceDeg;
+            this.chunkStart = chunkStart;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+        }
 
-        for (int f = 0; f < features.length(); f++) {
-            JSONObject feature = features.getJSONObject(f);
-            addGeometryToBuilder(feature.getJSONObject("geometry"), builder, radius, halfWidth);
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RingChunkTask(geometry, radius, toleranceDeg, chunkStart, parts, from, mid),
+                        new RingChunkTask(geometry, radius, toleranceDeg, chunkStart, parts, mid, to));
+                return;
+            }
+            int firstRing = chunkStart[from], endRing = chunkStart[from + 1];
+            int vertices = geometry.firstVertex(endRing) - geometry.firstVertex(firstRing);
+            // two ribbon vertices and one quad per ring vertex at full detail
+            BorderMeshBuilder builder = new BorderMeshBuilder(2 * vertices, vertices);
+            int[] kept = new int[maxRingSize(geometry, firstRing, endRing)];
+            for (int r = firstRing; r < endRing; r++) {
+                int n = RingSimplifier.simplify(geometry, r, toleranceDeg, kept);
+                if (n >= 3) addRing(builder, geometry, kept, n, radius, HALF_WIDTH);
+            }
+            parts[from] = builder;
         }
+    }
+
+    /** Ring boundaries of chunks holding about the same number of vertices each. */
+    private static int[] splitRings(WorldGeometry geometry, int parallelism) {
+        int rings = geometry.ringCount();
+        int chunks = Math.max(1, Math.min(rings, Math.min(parallelism * 4, geometry.vertexCount() / MIN_CHUNK_VERTICES)));
+        int[] chunkStart = new int[chunks + 1];
+        long perChunk = (long) geometry.vertexCount() / chunks;
+        int c = 1;
+        for (int r = 0; r < rings && c < chunks; r++) {
+            if (geometry.firstVertex(r) >= perChunk * c) chunkStart[c++] = r;
+        }
+        while (c <= chunks) chunkStart[c++] = rings;
+        return chunkStart;
+    }
 
-        TriangleMesh mesh = builder.buildMesh();
-        MeshView mv = new MeshView(mesh);
+    private static MeshView styled(MeshView mv) {
         mv.setCullFace(CullFace.NONE);
         mv.setDepthTest(DepthTest.ENABLE);
         mv.setMaterial(new PhongMaterial(Color.web("#6b7280")));
         return mv;
     }
 
-    private static void addGeometryToBuilder(JSONObject geom, BorderMeshBuilder builder,
-                                             double radius, double halfWidth) {
-        String type = geom.getString("type");
-        if (type.equals("Polygon")) {
-            JSONArray rings = geom.getJSONArray("coordinates");
-            if (rings.length() == 0) return;
-            addRing(builder, rings.getJSONArray(0), radius, halfWidth);
-        } else if (type.equals("MultiPolygon")) {
-            JSONArray polys = geom.getJSONArray("coordinates");
-            for (int p = 0; p < polys.length(); p++) {
-                JSONArray rings = polys.getJSONArray(p);
-                if (rings.length() == 0) continue;
-                addRing(builder, rings.getJSONArray(0), radius, halfWidth);
-            }
+    /**
+     * Emits a closed ribbon along the ring. Every ring vertex contributes one upper and one
+     * lower vertex that are shared by the quads on both sides of it.
+     */
+    private static void addRing(BorderMeshBuilder builder, WorldGeometry geometry, int[] kept, int n,
+                                double radius, double halfWidth) {
+        double[] pos = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            CoordinateUtils.latLonToPoint(geometry.lat(kept[i]), geometry.lon(kept[i]), radius, pos, 3 * i);
         }
-    }
 
-    private static void addRing(BorderMeshBuilder builder, JSONArray ring, double radius, double halfWidth) {
-        List<double[]> ringLatLon = new ArrayList<>(ring.length());
-        for (int i = 0; i < ring.length(); i++) {
-            JSONArray c = ring.getJSONArray(i);
-            ringLatLon.add(new double[]{ c.getDouble(0), c.getDouble(1) });
-        }
-        for (int i = 0; i < ringLatLon.size(); i++) {
-            var a = ringLatLon.get(i);
-            var b = ringLatLon.get((i+1) % ringLatLon.size());
-            Point3D A3 = CoordinateUtils.latLonToPoint(a[1], a[0], radius);
-            Point3D B3 = CoordinateUtils.latLonToPoint(b[1], b[0], radius);
-            Point3D d = B3.subtract(A3);
-            Point3D nrm = A3.normalize();
-            Point3D s = d.crossProduct(nrm).normalize();
-            builder.addQuad(A3.add(s.multiply(halfWidth)),
-                    B3.add(s.multiply(halfWidth)),
-                    B3.subtract(s.multiply(halfWidth)),
-                    A3.subtract(s.multiply(halfWidth)));
+        int firstUp = -1;
+        for (int i = 0; i < n; i++) {
+            int prev = 3 * ((i + n - 1) % n), next = 3 * ((i + 1) % n), cur = 3 * i;
+            // tangent from the neighbours, side = tangent x surface normal
+            double tx = pos[next] - pos[prev], ty = pos[next + 1] - pos[prev + 1], tz = pos[next + 2] - pos[prev + 2];
+            double nx = pos[cur], ny = pos[cur + 1], nz = pos[cur + 2];
+            double sx = ty * nz - tz * ny, sy = tz * nx - tx * nz, sz = tx * ny - ty * nx;
+            double len = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            if (len > 0) { sx *= halfWidth / len; sy *= halfWidth / len; sz *= halfWidth / len; }
+
+            int up = builder.addPoint(nx + sx, ny + sy, nz + sz);
+            builder.addPoint(nx - sx, ny - sy, nz - sz);
+            if (i == 0) firstUp = up;
+            else builder.addQuad(up - 2, up, up + 1, up - 1);
         }
+        int lastUp = firstUp + 2 * (n - 1);
+        builder.addQuad(lastUp, firstUp, firstUp + 1, lastUp + 1);
     }
-}
 
+    private static int maxRingSize(WorldGeometry geometry, int firstRing, int endRing) {
+        int max = 0;
+        for (int r = firstRing; r < endRing; r++) max = Math.max(max, geometry.ringSize(r));
+        return max;
+    }
+}
@@ -1,42 +1,75 @@
 package main.newsmap.geo;
 
 import org.json.JSONArray;
-import org.json.JSONObject;
 
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Point-in-country lookup backed by a prebuilt lat/lon grid.
+ * Every polygon ring of the {@link WorldGeometry} gets a bounding box and is bucketed
+ * into the grid cells that box covers, so a hover lookup only runs the ray-casting
+ * test against the few rings under the cursor, without allocating anything.
+ */
 public class CountryFinder {
-    private final JSONArray features;
+    private static final double CELL_DEG = 2.0;
+    private static final int COLS = (int) (360 / CELL_DEG);
+    private static final int ROWS = (int) (180 / CELL_DEG);
+
+    private final WorldGeometry geometry;
+    // feature index of every ring
+    private final int[] ringFeature;
+    private final double[] minLon, minLat, maxLon, maxLat;
+
+    // CSR layout: rings of cell c are cellRings[cellStart[c] .. cellStart[c+1])
+    private final int[] cellStart;
+    private final int[] cellRings;
+
+    public CountryFinder(JSONArray features) {
+        this(WorldGeometry.fromFeatures(features));
+    }
 
-    public CountryFinder(JSONArray features) { this.features = features; }
+    public CountryFinder(WorldGeometry geometry) {
+        this.geometry = geometry;
+        int n = geometry.ringCount();
+        ringFeature = new int[n];
+        for (int f = 0; f < geometry.featureCount(); f++) {
+            Arrays.fill(ringFeature, geometry.firstRing(f), geometry.endRing(f), f);
+        }
+        minLon = new double[n]; minLat = new double[n];
+        maxLon = new double[n]; maxLat = new double[n];
+        for (int r = 0; r < n; r++) computeBounds(r);
+
+        // two passes over the ring boxes: count per cell, then fill
+        cellStart = new int[COLS * ROWS + 1];
+        for (int r = 0; r < n; r++) {
+            forEachCell(r, c -> cellStart[c + 1]++);
+        }
+        for (int c = 0; c < COLS * ROWS; c++) cellStart[c + 1] += cellStart[c];
+        cellRings = new int[cellStart[COLS * ROWS]];
+        int[] fill = Arrays.copyOf(cellStart, COLS * ROWS);
+        for (int r = 0; r < n; r++) {
+            final int ring = r;
+            forEachCell(r, c -> cellRings[fill[c]++] = ring);
+        }
+    }
 
     public String findCountry(double lat, double lon) {
-        for (int i = 0; i < features.length(); i++) {
-            JSONObject feature = features.getJSONObject(i);
-            JSONObject geometry = feature.optJSONObject("geometry");
-            if (geometry == null) continue;
-            JSONObject properties = feature.optJSONObject("properties");
-            String name = properties != null ? properties.optString("name_en", "Unknown") : "Unknown";
-            String type = geometry.optString("type","");
-            JSONArray coordinates = geometry.optJSONArray("coordinates");
-            if (coordinates == null) continue;
-
-            if (type.equals("Polygon")) {
-                if (polygonContains(coordinates, lat, lon)) return name;
-            } else if (type.equals("MultiPolygon")) {
-                for (int j = 0; j < coordinates.length(); j++) {
-                    if (polygonContains(coordinates.getJSONArray(j), lat, lon)) return name;
-                }
-            }
+        int c = cellOf(lat, lon);
+        for (int k = cellStart[c], end = cellStart[c + 1]; k < end; k++) {
+            int r = cellRings[k];
+            if (lon < minLon[r] || lon > maxLon[r] || lat < minLat[r] || lat > maxLat[r]) continue;
+            if (ringContains(r, lat, lon)) return geometry.name(ringFeature[r]);
         }
         return null;
     }
 
-    private boolean polygonContains(JSONArray polygonCoords, double lat, double lon) {
-        JSONArray ring = polygonCoords.getJSONArray(0);
+    private boolean ringContains(int ring, double lat, double lon) {
         boolean inside = false;
-        for (int i = 0, j = ring.length()-1; i < ring.length(); j = i++) {
-            JSONArray pi = ring.getJSONArray(i), pj = ring.getJSONArray(j);
-            double xi = pi.getDouble(0), yi = pi.getDouble(1);
-            double xj = pj.getDouble(0), yj = pj.getDouble(1);
+        int first = geometry.firstVertex(ring), end = geometry.endVertex(ring);
+        for (int i = first, j = end - 1; i < end; j = i++) {
+            double xi = geometry.lon(i), yi = geometry.lat(i);
+            double xj = geometry.lon(j), yj = geometry.lat(j);
             boolean intersect = ((yi > lat) != (yj > lat)) &&
                     (lon < (xj - xi) * (lat - yi) / (yj - yi) + xi);
             if (intersect) inside = !inside;
@@ -44,6 +77,37 @@ public class CountryFinder {
         return inside;
     }
 
-    public JSONArray getFeatures() { return features; }
+    private void computeBounds(int ring) {
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = geometry.firstVertex(ring); i < geometry.endVertex(ring); i++) {
+            x0 = Math.min(x0, geometry.lon(i)); x1 = Math.max(x1, geometry.lon(i));
+            y0 = Math.min(y0, geometry.lat(i)); y1 = Math.max(y1, geometry.lat(i));
+        }
+        minLon[ring] = x0; maxLon[ring] = x1;
+        minLat[ring] = y0; maxLat[ring] = y1;
+    }
+
+    private void forEachCell(int ring, IntConsumer action) {
+        if (geometry.ringSize(ring) == 0) return;
+        int c0 = col(minLon[ring]), c1 = col(maxLon[ring]);
+        int r0 = row(minLat[ring]), r1 = row(maxLat[ring]);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) action.accept(r * COLS + c);
+        }
+    }
 
+    private static int cellOf(double lat, double lon) {
+        return row(lat) * COLS + col(lon);
+    }
+
+    private static int col(double lon) {
+        int c = (int) Math.floor((lon + 180) / CELL_DEG);
+        return Math.max(0, Math.min(COLS - 1, c));
+    }
+
+    private static int row(double lat) {
+        int r = (int) Math.floor((lat + 90) / CELL_DEG);
+        return Math.max(0, Math.min(ROWS - 1, r));
+    }
 }
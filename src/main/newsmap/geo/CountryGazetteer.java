@@ -0,0 +1,156 @@
+package main.newsmap.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Places a text at the first country it names. Every feature of the {@link WorldGeometry} is known by its name plus
+ * a few common short forms, and stands for one point: the area centroid of its largest ring, so a country with
+ * overseas islands is placed on its mainland. Names are matched case-sensitively on whole words, which keeps
+ * "Chad" the country apart from "chad" the noun; where several names start at the same word the longest wins.
+ */
+public final class CountryGazetteer {
+
+    // short forms news copy uses for the Natural Earth names; only added when the country exists in the geometry
+    private static final Map<String, List<String>> ALIASES = Map.of(
+            "United States of America", List.of("United States", "U.S.", "US", "USA"),
+            "United Kingdom", List.of("UK", "U.K.", "Britain"),
+            "People's Republic of China", List.of("China"),
+            "Democratic Republic of the Congo", List.of("DR Congo", "DRC"),
+            "Czech Republic", List.of("Czechia"),
+            "United Arab Emirates", List.of("UAE"));
+
+    /** A name split into words, and the feature it stands for. */
+    private record Entry(String[] words, int feature) {}
+
+    private final String[] names;
+    private final double[] lats;
+    private final double[] lons;
+    // entries by their first word, longest first
+    private final Map<String, List<Entry>> byFirstWord = new HashMap<>();
+
+    public CountryGazetteer(WorldGeometry geometry) {
+        int n = geometry.featureCount();
+        names = new String[n];
+        lats = new double[n];
+        lons = new double[n];
+        for (int f = 0; f < n; f++) {
+            names[f] = geometry.name(f);
+            representativePoint(geometry, f);
+            add(names[f], f);
+            for (String alias : ALIASES.getOrDefault(names[f], List.of())) add(alias, f);
+        }
+        for (List<Entry> entries : byFirstWord.values()) {
+            entries.sort(Comparator.comparingInt((Entry e) -> e.words().length).reversed());
+        }
+    }
+
+    /** The feature of the first country named in {@code text}, or -1. */
+    public int find(String text) {
+        if (text == null || text.isEmpty()) return -1;
+        List<String> words = words(text);
+        for (int i = 0; i < words.size(); i++) {
+            List<Entry> entries = byFirstWord.get(words.get(i));
+            if (entries == null) continue;
+            for (Entry e : entries) {
+                if (matches(words, i, e.words())) return e.feature();
+            }
+        }
+        return -1;
+    }
+
+    public String name(int feature) { return names[feature]; }
+    public double lat(int feature) { return lats[feature]; }
+    public double lon(int feature) { return lons[feature]; }
+
+    private void add(String name, int feature) {
+        List<String> words = words(name);
+        if (words.isEmpty() || name.equals("Unknown")) return;
+        byFirstWord.computeIfAbsent(words.get(0), k -> new ArrayList<>())
+                .add(new Entry(words.toArray(new String[0]), feature));
+    }
+
+    private static boolean matches(List<String> words, int from, String[] name) {
+        if (from + name.length > words.size()) return false;
+        for (int k = 0; k < name.length; k++) {
+            if (!words.get(from + k).equals(name[k])) return false;
+        }
+        return true;
+    }
+
+    // letters, digits, dots inside abbreviations and apostrophes inside names stay part of a word; a possessive
+    // "'s" is dropped, from names as from text, so "China's" matches "China"
+    private static List<String> words(String text) {
+        List<String> out = new ArrayList<>();
+        int i = 0, len = text.length();
+        while (i < len) {
+            while (i < len && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < len) {
+                char c = text.charAt(i);
+                if (Character.isLetterOrDigit(c)) i++;
+                else if ((c == '.' || c == '\'' || c == '’') && i + 1 < len && Character.isLetter(text.charAt(i + 1))) i++;
+                else break;
+            }
+            // "U.S." keeps its closing dot so it matches the alias
+            if (i < len && text.charAt(i) == '.' && i - start >= 3 && text.charAt(i - 2) == '.') i++;
+            if (i > start) {
+                String word = text.substring(start, i).replace('’', '\'');
+                out.add(word.endsWith("'s") ? word.substring(0, word.length() - 2) : word);
+            }
+        }
+        return out;
+    }
+
+    /** Area centroid of the feature's largest ring; the mean vertex if the ring is degenerate. */
+    private void representativePoint(WorldGeometry g, int feature) {
+        int best = -1;
+        double bestArea = -1;
+        for (int r = g.firstRing(feature); r < g.endRing(feature); r++) {
+            double area = Math.abs(signedArea(g, r));
+            if (area > bestArea) {
+                bestArea = area;
+                best = r;
+            }
+        }
+        if (best < 0 || g.ringSize(best) == 0) {
+            lats[feature] = Double.NaN;
+            lons[feature] = Double.NaN;
+            return;
+        }
+
+        double a = signedArea(g, best);
+        double cx = 0, cy = 0;
+        int first = g.firstVertex(best), end = g.endVertex(best);
+        if (Math.abs(a) > 1e-9) {
+            for (int i = first, j = end - 1; i < end; j = i++) {
+                double cross = g.lon(j) * g.lat(i) - g.lon(i) * g.lat(j);
+                cx += (g.lon(j) + g.lon(i)) * cross;
+                cy += (g.lat(j) + g.lat(i)) * cross;
+            }
+            cx /= 6 * a;
+            cy /= 6 * a;
+        } else {
+            for (int i = first; i < end; i++) {
+                cx += g.lon(i);
+                cy += g.lat(i);
+            }
+            cx /= end - first;
+            cy /= end - first;
+        }
+        lons[feature] = cx;
+        lats[feature] = cy;
+    }
+
+    private static double signedArea(WorldGeometry g, int ring) {
+        double sum = 0;
+        int first = g.firstVertex(ring), end = g.endVertex(ring);
+        for (int i = first, j = end - 1; i < end; j = i++) {
+            sum += g.lon(j) * g.lat(i) - g.lon(i) * g.lat(j);
+        }
+        return sum / 2;
+    }
+}
@@ -0,0 +1,36 @@
+package main.newsmap.geo;
+
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Build step that turns the world borders GeoJSON into the binary layout read by
+ * {@link WorldGeometry#map(Path)}.
+ *
+ * Usage: {@code GeoBinaryConverter [input.json] [output.bin]}. Without an input file the
+ * {@code /world.json} classpath resource is converted, and the output defaults to
+ * {@link WorldGeometry#DEFAULT_BINARY_PATH}. The {@code geo-binary} Maven profile runs it after compilation
+ * whenever {@code resources/world.json} is present.
+ */
+public class GeoBinaryConverter {
+    public static void main(String[] args) throws Exception {
+        Path out = Path.of(args.length > 1 ? args[1] : WorldGeometry.DEFAULT_BINARY_PATH);
+
+        long start = System.nanoTime();
+        WorldGeometry geometry;
+        if (args.length > 0) {
+            String json = Files.readString(Path.of(args[0]), StandardCharsets.UTF_8);
+            geometry = WorldGeometry.fromFeatures(new JSONObject(json).getJSONArray("features"));
+        } else {
+            geometry = WorldGeometry.fromFeatures(GeoJsonLoader.loadFromClasspath("/world.json"));
+        }
+        geometry.writeTo(out);
+
+        System.out.printf("Wrote %d features, %d rings, %d vertices to %s (%d bytes) in %d ms%n",
+                geometry.featureCount(), geometry.ringCount(), geometry.vertexCount(),
+                out.toAbsolutePath(), Files.size(out), (System.nanoTime() - start) / 1_000_000);
+    }
+}
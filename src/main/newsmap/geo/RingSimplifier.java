@@ -0,0 +1,72 @@
+package main.newsmap.geo;
+
+/**
+ * Douglas-Peucker simplification of a single {@link WorldGeometry} ring in lon/lat space.
+ */
+final class RingSimplifier {
+
+    private RingSimplifier() {}
+
+    /**
+     * Writes the vertex indices that survive simplification into {@code out} and returns how
+     * many there are. The duplicated closing vertex of a GeoJSON ring is dropped, as are
+     * repeated points. A tolerance of zero keeps every remaining vertex.
+     */
+    static int simplify(WorldGeometry g, int ring, double toleranceDeg, int[] out) {
+        int first = g.firstVertex(ring);
+        int end = g.endVertex(ring);
+        while (end - first > 1 && samePoint(g, first, end - 1)) end--;
+        int n = end - first;
+        if (n < 3 || toleranceDeg <= 0) return dedupe(g, first, end, null, out);
+
+        boolean[] keep = new boolean[n];
+        keep[0] = keep[n - 1] = true;
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double tol2 = toleranceDeg * toleranceDeg;
+
+        while (top > 0) {
+            int hi = stack[--top];
+            int lo = stack[--top];
+            double ax = g.lon(first + lo), ay = g.lat(first + lo);
+            double dx = g.lon(first + hi) - ax, dy = g.lat(first + hi) - ay;
+            double segLen2 = dx * dx + dy * dy;
+
+            int farthest = -1;
+            double maxDist2 = tol2;
+            for (int i = lo + 1; i < hi; i++) {
+                double px = g.lon(first + i) - ax, py = g.lat(first + i) - ay;
+                double d2;
+                if (segLen2 == 0) {
+                    d2 = px * px + py * py;
+                } else {
+                    double cross = px * dy - py * dx;
+                    d2 = cross * cross / segLen2;
+                }
+                if (d2 > maxDist2) { maxDist2 = d2; farthest = i; }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = lo; stack[top++] = farthest;
+                stack[top++] = farthest; stack[top++] = hi;
+            }
+        }
+        return dedupe(g, first, end, keep, out);
+    }
+
+    private static int dedupe(WorldGeometry g, int first, int end, boolean[] keep, int[] out) {
+        int count = 0;
+        for (int v = first; v < end; v++) {
+            if (keep != null && !keep[v - first]) continue;
+            if (count > 0 && samePoint(g, out[count - 1], v)) continue;
+            out[count++] = v;
+        }
+        return count;
+    }
+
+    private static boolean samePoint(WorldGeometry g, int a, int b) {
+        return g.lon(a) == g.lon(b) && g.lat(a) == g.lat(b);
+    }
+}
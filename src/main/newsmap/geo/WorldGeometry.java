@@ -0,0 +1,225 @@
+package main.newsmap.geo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flattened country outlines shared by the border mesh and the country lookup.
+ * Every feature owns a range of rings, every ring a range of vertices, and all vertices
+ * live in one float buffer as interleaved lon/lat pairs. Only the outer ring of each
+ * polygon is kept since none of the consumers handle holes.
+ *
+ * The same layout is stored on disk by {@link GeoBinaryConverter} and memory-mapped
+ * back by {@link #map(Path)}, so startup does not have to parse the GeoJSON at all.
+ * File layout (little endian):
+ * <pre>
+ *   int magic, int version, int featureCount, int ringCount, int vertexCount
+ *   int[featureCount + 1] featureRingStart
+ *   int[ringCount + 1]    ringVertexStart
+ *   float[vertexCount * 2] lon/lat
+ *   featureCount x (int byteLength, UTF-8 name)
+ * </pre>
+ */
+public final class WorldGeometry {
+    public static final String DEFAULT_BINARY_PATH = "data/geo/world.bin";
+
+    private static final int MAGIC = 0x4E4D4730; // "NMG0"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    private final String[] names;
+    private final int[] featureRingStart;
+    private final int[] ringVertexStart;
+    private final FloatBuffer coords;
+
+    private WorldGeometry(String[] names, int[] featureRingStart, int[] ringVertexStart, FloatBuffer coords) {
+        this.names = names;
+        this.featureRingStart = featureRingStart;
+        this.ringVertexStart = ringVertexStart;
+        this.coords = coords;
+    }
+
+    /**
+     * Uses the preprocessed binary file when it exists, is readable and is not older than the GeoJSON
+     * classpath resource, and falls back to parsing the resource otherwise.
+     */
+    public static WorldGeometry load(Path binary, String jsonResource) {
+        if (Files.isRegularFile(binary)) {
+            try {
+                if (olderThanResource(binary, jsonResource)) {
+                    System.err.println(binary + " is older than " + jsonResource + ", falling back to " + jsonResource);
+                } else {
+                    return map(binary);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not map " + binary + " (" + e.getMessage() + "), falling back to " + jsonResource);
+            }
+        }
+        return fromFeatures(GeoJsonLoader.loadFromClasspath(jsonResource));
+    }
+
+    // false when the resource's modification time is unknown
+    private static boolean olderThanResource(Path binary, String jsonResource) throws IOException {
+        URL url = WorldGeometry.class.getResource(jsonResource);
+        if (url == null) return false;
+        long resourceModified = url.openConnection().getLastModified();
+        return resourceModified > 0 && Files.getLastModifiedTime(binary).toMillis() < resourceModified;
+    }
+
+    public static WorldGeometry fromFeatures(JSONArray features) {
+        List<String> names = new ArrayList<>();
+        List<JSONArray> rings = new ArrayList<>();
+        int[] featureRingStart = new int[features.length() + 1];
+        int vertexCount = 0;
+
+        for (int f = 0; f < features.length(); f++) {
+            featureRingStart[names.size()] = rings.size();
+            JSONObject feature = features.getJSONObject(f);
+            JSONObject geometry = feature.optJSONObject("geometry");
+            JSONArray coordinates = geometry != null ? geometry.optJSONArray("coordinates") : null;
+            if (coordinates == null) continue;
+            JSONObject properties = feature.optJSONObject("properties");
+            String name = properties != null ? properties.optString("name_en", "Unknown") : "Unknown";
+            String type = geometry.optString("type", "");
+
+            if (type.equals("Polygon")) {
+                vertexCount += addOuterRing(coordinates, rings);
+            } else if (type.equals("MultiPolygon")) {
+                for (int p = 0; p < coordinates.length(); p++) {
+                    vertexCount += addOuterRing(coordinates.getJSONArray(p), rings);
+                }
+            } else {
+                continue;
+            }
+            names.add(name);
+        }
+        int featureCount = names.size();
+        featureRingStart[featureCount] = rings.size();
+
+        int[] ringVertexStart = new int[rings.size() + 1];
+        float[] coords = new float[vertexCount * 2];
+        int v = 0;
+        for (int r = 0; r < rings.size(); r++) {
+            ringVertexStart[r] = v;
+            JSONArray ring = rings.get(r);
+            for (int i = 0; i < ring.length(); i++, v++) {
+                JSONArray c = ring.getJSONArray(i);
+                coords[2 * v] = (float) c.getDouble(0);
+                coords[2 * v + 1] = (float) c.getDouble(1);
+            }
+        }
+        ringVertexStart[rings.size()] = v;
+
+        return new WorldGeometry(names.toArray(new String[0]),
+                Arrays.copyOf(featureRingStart, featureCount + 1),
+                ringVertexStart,
+                FloatBuffer.wrap(coords));
+    }
+
+    private static int addOuterRing(JSONArray polygonCoords, List<JSONArray> rings) {
+        if (polygonCoords.length() == 0) return 0;
+        JSONArray ring = polygonCoords.getJSONArray(0);
+        rings.add(ring);
+        return ring.length();
+    }
+
+    /** Maps a file written by {@link #writeTo(Path)}; the vertex data stays in the page cache. */
+    public static WorldGeometry map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) {
+                throw new IOException("Not a world geometry file: " + file);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException("Unsupported geometry version " + version + " in " + file);
+            int featureCount = buf.getInt();
+            int ringCount = buf.getInt();
+            int vertexCount = buf.getInt();
+            long arraysBytes = HEADER_BYTES + ((long) featureCount + 1 + ringCount + 1) * Integer.BYTES
+                    + (long) vertexCount * 2 * Float.BYTES;
+            if (featureCount < 0 || ringCount < 0 || vertexCount < 0 || arraysBytes > ch.size()) {
+                throw new IOException("Truncated or corrupt geometry file: " + file);
+            }
+
+            int[] featureRingStart = new int[featureCount + 1];
+            buf.asIntBuffer().get(featureRingStart);
+            buf.position(buf.position() + featureRingStart.length * Integer.BYTES);
+            int[] ringVertexStart = new int[ringCount + 1];
+            buf.asIntBuffer().get(ringVertexStart);
+            buf.position(buf.position() + ringVertexStart.length * Integer.BYTES);
+            if (featureRingStart[featureCount] != ringCount || ringVertexStart[ringCount] != vertexCount) {
+                throw new IOException("Corrupt geometry offsets in " + file);
+            }
+
+            int coordBytes = vertexCount * 2 * Float.BYTES;
+            FloatBuffer coords = buf.slice(buf.position(), coordBytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            buf.position(buf.position() + coordBytes);
+
+            String[] names = new String[featureCount];
+            for (int f = 0; f < featureCount; f++) {
+                if (buf.remaining() < Integer.BYTES) throw new IOException("Truncated geometry names in " + file);
+                int length = buf.getInt();
+                if (length < 0 || length > buf.remaining()) throw new IOException("Corrupt geometry names in " + file);
+                byte[] utf8 = new byte[length];
+                buf.get(utf8);
+                names[f] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            return new WorldGeometry(names, featureRingStart, ringVertexStart, coords);
+        }
+    }
+
+    public void writeTo(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        int vertexCount = vertexCount();
+        int size = HEADER_BYTES
+                + (featureRingStart.length + ringVertexStart.length) * Integer.BYTES
+                + vertexCount * 2 * Float.BYTES;
+        byte[][] utf8Names = new byte[names.length][];
+        for (int f = 0; f < names.length; f++) {
+            utf8Names[f] = names[f].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + utf8Names[f].length;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putInt(names.length).putInt(ringCount()).putInt(vertexCount);
+        for (int s : featureRingStart) buf.putInt(s);
+        for (int s : ringVertexStart) buf.putInt(s);
+        for (int i = 0; i < vertexCount * 2; i++) buf.putFloat(coords.get(i));
+        for (byte[] name : utf8Names) buf.putInt(name.length).put(name);
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(buf.array());
+        }
+    }
+
+    public int featureCount() { return names.length; }
+    public int ringCount() { return ringVertexStart.length - 1; }
+    public int vertexCount() { return ringVertexStart[ringVertexStart.length - 1]; }
+
+    public String name(int feature) { return names[feature]; }
+    public int firstRing(int feature) { return featureRingStart[feature]; }
+    public int endRing(int feature) { return featureRingStart[feature + 1]; }
+
+    public int firstVertex(int ring) { return ringVertexStart[ring]; }
+    public int endVertex(int ring) { return ringVertexStart[ring + 1]; }
+    public int ringSize(int ring) { return ringVertexStart[ring + 1] - ringVertexStart[ring]; }
+
+    public double lon(int vertex) { return coords.get(2 * vertex); }
+    public double lat(int vertex) { return coords.get(2 * vertex + 1); }
+}
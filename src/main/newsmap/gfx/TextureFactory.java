@@ -1,15 +1,77 @@
 package main.newsmap.gfx;
 
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelWriter;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the procedural textures used on the globe. Textures and the materials wrapping
+ * them are cached per size and colour, so every hotspot of the same kind shares one image.
+ */
 public class TextureFactory {
 
+    private record Key(int size, Color color, int levels, double maxOpacity) {}
+
+    private final Map<Key, Image> ringTextures = new ConcurrentHashMap<>();
+    private final Map<Key, PhongMaterial> ringMaterials = new ConcurrentHashMap<>();
+
     public Image makeRingTexture(int size, Color color) {
-        WritableImage img = new WritableImage(size, size);
-        PixelWriter pw = img.getPixelWriter();
+        return makeRingAtlas(size, color, 1, 1.0);
+    }
+
+    /** Unlit material showing the ring texture, shared by everything that asks for the same ring. */
+    public PhongMaterial ringMaterial(int size, Color color) {
+        return ringAtlasMaterial(size, color, 1, 1.0);
+    }
+
+    /**
+     * A vertical strip of {@code levels} copies of the ring, frame k drawn at
+     * {@code maxOpacity * k / (levels - 1)} opacity (a single frame is drawn at maxOpacity).
+     * Batched geometry picks a frame through its texture coordinates, which gives every
+     * instance its own opacity while sharing one material.
+     */
+    public Image makeRingAtlas(int size, Color color, int levels, double maxOpacity) {
+        return ringTextures.computeIfAbsent(new Key(size, color, levels, maxOpacity),
+                k -> renderRingAtlas(k.size(), k.color(), k.levels(), k.maxOpacity()));
+    }
+
+    public PhongMaterial ringAtlasMaterial(int size, Color color, int levels, double maxOpacity) {
+        return ringMaterials.computeIfAbsent(new Key(size, color, levels, maxOpacity), k -> {
+            PhongMaterial mat = new PhongMaterial();
+            mat.setDiffuseMap(makeRingAtlas(k.size(), k.color(), k.levels(), k.maxOpacity()));
+            mat.setSpecularColor(Color.TRANSPARENT);
+            return mat;
+        });
+    }
+
+    private static Image renderRingAtlas(int size, Color color, int levels, double maxOpacity) {
+        double[] mask = ringMask(size);
+        int rgb = (to8Bit(color.getRed()) << 16) | (to8Bit(color.getGreen()) << 8) | to8Bit(color.getBlue());
+
+        int[] argb = new int[size * size * levels];
+        for (int k = 0; k < levels; k++) {
+            double opacity = levels == 1 ? maxOpacity : maxOpacity * k / (levels - 1);
+            int offset = k * size * size;
+            for (int i = 0; i < mask.length; i++) {
+                // transparent pixels stay 0, matching Color.TRANSPARENT
+                int a = to8Bit(mask[i] * opacity);
+                if (a > 0) argb[offset + i] = (a << 24) | rgb;
+            }
+        }
+
+        WritableImage img = new WritableImage(size, size * levels);
+        img.getPixelWriter().setPixels(0, 0, size, size * levels, PixelFormat.getIntArgbInstance(), argb, 0, size);
+        return img;
+    }
+
+    /** Alpha of the feathered ring for every pixel of a size x size square. */
+    private static double[] ringMask(int size) {
+        double[] mask = new double[size * size];
 
         double cx = (size - 1) / 2.0;
         double cy = (size - 1) / 2.0;
@@ -19,32 +81,29 @@ public class TextureFactory {
         double outer = 0.95 * maxR;
         double thickness = outer - inner;
         double feather = 0.6 * thickness;
+        double centerline = inner + thickness / 2.0;
 
         for (int y = 0; y < size; y++) {
             for (int x = 0; x < size; x++) {
                 double dx = x - cx, dy = y - cy;
                 double r = Math.hypot(dx, dy);
 
-                double centerline = inner + thickness / 2.0;
                 double dist = Math.abs(r - centerline);
 
                 double a = 1.0 - clamp((dist - (thickness/2.0 - feather)) / feather, 0.0, 1.0);
                 double fadeOuter = 1.0 - clamp((r - outer + feather) / feather, 0.0, 1.0);
                 double fadeInner = 1.0 - clamp((inner - r + feather) / feather, 0.0, 1.0);
-                double alpha = a * fadeOuter * fadeInner;
-
-                if (alpha <= 0) {
-                    pw.setColor(x, y, Color.TRANSPARENT);
-                } else {
-                    pw.setColor(x, y, new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
-                }
+                mask[y * size + x] = Math.max(0.0, a * fadeOuter * fadeInner);
             }
         }
-        return img;
+        return mask;
+    }
+
+    private static int to8Bit(double channel) {
+        return (int) Math.round(clamp(channel, 0.0, 1.0) * 255);
     }
 
     private static double clamp(double v, double min, double max) {
         return Math.max(min, Math.min(max, v));
     }
 }
-
@@ -1,6 +1,5 @@
 package main.newsmap.hotspot;
 
-import javafx.scene.Group;
 import main.newsmap.model.Article;
 import main.newsmap.model.HotspotCategory;
 
@@ -10,15 +9,10 @@ public record Hotspot(double latDeg,
                       double lonDeg,
                       List<Article> articles,
                       HotspotCategory category,
-                      Group node, String location) {
+                      String location) {
     public HotspotCategory getCategory() {
         return category;
     }
 
-    public void setVisible(boolean value) {
-        node.setVisible(value);
-    }
-
 
 }
-
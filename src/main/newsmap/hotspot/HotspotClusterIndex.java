@@ -0,0 +1,170 @@
+package main.newsmap.hotspot;
+
+import main.newsmap.model.Article;
+import main.newsmap.model.HotspotCategory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical lat/lon grid over the hotspots. Level 0 uses 16-degree cells and every
+ * following level halves the cell size, so a hotspot belongs to exactly one cell per level.
+ * Adding or removing a hotspot touches one cell on each level; switching levels never
+ * re-clusters anything, it only reads out the clusters that already exist on the other level.
+ */
+final class HotspotClusterIndex {
+    static final double[] CELL_DEG = { 16, 8, 4, 2, 1, 0.5, 0.25 };
+    static final int LEVELS = CELL_DEG.length;
+
+    private static final HotspotCategory[] CATEGORIES = HotspotCategory.values();
+
+    /** Hotspots sharing a cell on one level, plus what is currently drawn for them. */
+    static final class Cluster {
+        final int level;
+        final long cell;
+        final List<Hotspot> members = new ArrayList<>();
+        // sum of the members' unit vectors; its direction is the cluster centroid
+        double sx, sy, sz;
+        // the members' articles in join order, appended to as members join; null after a removal until next read
+        private List<Article> articles = new ArrayList<>();
+        // per category (by ordinal): members of that category, and their articles
+        private final int[] categoryMembers = new int[CATEGORIES.length];
+        private final int[] categoryArticles = new int[CATEGORIES.length];
+
+        // the marker shown for this cluster while its level is displayed, or null
+        Hotspot marker;
+
+        Cluster(int level, long cell) {
+            this.level = level;
+            this.cell = cell;
+        }
+
+        int size() { return members.size(); }
+
+        private void add(Hotspot h, double x, double y, double z) {
+            members.add(h);
+            sx += x; sy += y; sz += z;
+            if (articles != null) articles.addAll(h.articles());
+            count(h, 1);
+        }
+
+        private void remove(Hotspot h, double x, double y, double z) {
+            members.remove(h);
+            sx -= x; sy -= y; sz -= z;
+            articles = null;
+            count(h, -1);
+        }
+
+        private void count(Hotspot h, int sign) {
+            if (h.category() == null) return;
+            categoryMembers[h.category().ordinal()] += sign;
+            categoryArticles[h.category().ordinal()] += sign * h.articles().size();
+        }
+
+        /** Every member's articles, members in the order they joined. */
+        List<Article> articles() {
+            if (articles == null) {
+                articles = new ArrayList<>();
+                for (Hotspot h : members) articles.addAll(h.articles());
+            }
+            return Collections.unmodifiableList(articles);
+        }
+
+        /** The members' category with the most articles, or null if no member has one. */
+        HotspotCategory category() {
+            HotspotCategory best = null;
+            for (int i = 0; i < CATEGORIES.length; i++) {
+                if (categoryMembers[i] > 0 && (best == null || categoryArticles[i] > categoryArticles[best.ordinal()])) {
+                    best = CATEGORIES[i];
+                }
+            }
+            return best;
+        }
+
+        boolean hasCategory(HotspotCategory category) {
+            return categoryMembers[category.ordinal()] > 0;
+        }
+
+        double centroidLat() {
+            double len = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            return len == 0 ? 0 : Math.toDegrees(Math.asin(sz / len));
+        }
+
+        double centroidLon() {
+            return Math.toDegrees(Math.atan2(sy, sx));
+        }
+    }
+
+    private final List<Map<Long, Cluster>> levels = new ArrayList<>(LEVELS);
+    // the cluster of every hotspot on every level, indexed like levels
+    private final Map<Hotspot, Cluster[]> memberships = new IdentityHashMap<>();
+
+    HotspotClusterIndex() {
+        for (int l = 0; l < LEVELS; l++) levels.add(new HashMap<>());
+    }
+
+    void add(Hotspot h) {
+        double lat = Math.toRadians(h.latDeg()), lon = Math.toRadians(h.lonDeg());
+        double x = Math.cos(lat) * Math.cos(lon), y = Math.cos(lat) * Math.sin(lon), z = Math.sin(lat);
+
+        Cluster[] owned = new Cluster[LEVELS];
+        for (int l = 0; l < LEVELS; l++) {
+            long cell = cellOf(h.latDeg(), h.lonDeg(), CELL_DEG[l]);
+            final int level = l;
+            Cluster c = levels.get(l).computeIfAbsent(cell, k -> new Cluster(level, k));
+            c.add(h, x, y, z);
+            owned[l] = c;
+        }
+        memberships.put(h, owned);
+    }
+
+    /** Removes the hotspot and returns its former clusters, one per level (null if unknown). */
+    Cluster[] remove(Hotspot h) {
+        Cluster[] owned = memberships.remove(h);
+        if (owned == null) return null;
+        double lat = Math.toRadians(h.latDeg()), lon = Math.toRadians(h.lonDeg());
+        double x = Math.cos(lat) * Math.cos(lon), y = Math.cos(lat) * Math.sin(lon), z = Math.sin(lat);
+
+        for (Cluster c : owned) {
+            c.remove(h, x, y, z);
+            if (c.members.isEmpty()) levels.get(c.level).remove(c.cell);
+        }
+        return owned;
+    }
+
+    Cluster clusterOf(Hotspot h, int level) {
+        Cluster[] owned = memberships.get(h);
+        return owned != null ? owned[level] : null;
+    }
+
+    Collection<Cluster> clusters(int level) {
+        return levels.get(level).values();
+    }
+
+    void clear() {
+        for (Map<Long, Cluster> level : levels) level.clear();
+        memberships.clear();
+    }
+
+    /**
+     * Level to display for a camera distance: the coarsest level when fully zoomed out,
+     * the finest one as the camera approaches {@code maxZ}.
+     */
+    static int levelForCameraZ(double cameraZ, double minZ, double maxZ) {
+        double t = (cameraZ - minZ) / (maxZ - minZ);
+        int level = (int) Math.floor(t * LEVELS);
+        return Math.max(0, Math.min(LEVELS - 1, level));
+    }
+
+    private static long cellOf(double latDeg, double lonDeg, double cellDeg) {
+        long cols = (long) Math.ceil(360 / cellDeg);
+        long row = (long) Math.floor((latDeg + 90) / cellDeg);
+        long col = Math.floorMod((long) Math.floor((lonDeg + 180) / cellDeg), cols);
+        return row * cols + col;
+    }
+}
@@ -0,0 +1,208 @@
+package main.newsmap.hotspot;
+
+import javafx.animation.Interpolator;
+import javafx.geometry.Point3D;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.PickResult;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Every hotspot pulse in one {@link TriangleMesh}. Each hotspot owns a slot of
+ * {@link #WAVES} quads; per frame the layer recomputes the quad corners (size) and the
+ * texture coordinates (which opacity frame of the ring atlas to show) of every slot and
+ * pushes both arrays to the mesh in one bulk write each. The scene graph holds a single
+ * node no matter how many hotspots exist.
+ *
+ * Released slots are recycled for the next hotspot. Unused and hidden slots collapse to
+ * zero-area quads, which are neither drawn nor picked.
+ */
+final class HotspotLayer {
+    static final int WAVES = 2;
+    static final int ALPHA_LEVELS = 16;
+    static final double BASE_OPACITY = 0.30;
+
+    private static final double START_SIZE = 0.0;
+    private static final double END_SIZE = 10.0;
+    private static final long PERIOD_NS = 3_000_000_000L;
+    // the second wave trails the first by this much
+    private static final long WAVE_DELAY_NS = 1_000_000_000L;
+
+    private static final int VERTS_PER_SLOT = WAVES * 4;
+    private static final int FACES_PER_SLOT = WAVES * 2;
+    // center, u axis, v axis, size scale
+    private static final int FRAME_DOUBLES = 10;
+
+    private final TriangleMesh mesh = new TriangleMesh();
+    private final MeshView view = new MeshView(mesh);
+
+    private float[] points = new float[0];
+    private float[] texCoords = new float[0];
+    private double[] frames = new double[0];
+    private long[] startNanos = new long[0];
+    private boolean[] visible = new boolean[0];
+    private Hotspot[] owners = new Hotspot[0];
+
+    private int capacity = 0;
+    // slots [0, highWater) have been handed out at least once
+    private int highWater = 0;
+    private int[] freeSlots = new int[0];
+    private int freeCount = 0;
+    private int liveCount = 0;
+    private int cursor = 0;
+
+    HotspotLayer(PhongMaterial ringAtlas, Consumer<Hotspot> onClick) {
+        view.setMaterial(ringAtlas);
+        view.setCullFace(CullFace.NONE);
+        view.setBlendMode(BlendMode.ADD);
+
+        view.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            Hotspot hs = hotspotAt(e.getPickResult());
+            if (hs == null) return;
+            if (e.isStillSincePress()) onClick.accept(hs);
+            e.consume();
+        });
+    }
+
+    MeshView view() { return view; }
+
+    boolean isEmpty() { return liveCount == 0; }
+
+    /** Takes a slot for a marker at {@code center}, facing out along u x v, drawn {@code scale} times the base size. */
+    int allocate(Point3D center, Point3D u, Point3D v, double scale) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == capacity) grow(Math.max(16, capacity * 2));
+            slot = highWater++;
+        }
+        int f = slot * FRAME_DOUBLES;
+        frames[f]     = center.getX(); frames[f + 1] = center.getY(); frames[f + 2] = center.getZ();
+        frames[f + 3] = u.getX();      frames[f + 4] = u.getY();      frames[f + 5] = u.getZ();
+        frames[f + 6] = v.getX();      frames[f + 7] = v.getY();      frames[f + 8] = v.getZ();
+        frames[f + 9] = scale;
+        startNanos[slot] = System.nanoTime();
+        visible[slot] = true;
+        liveCount++;
+        return slot;
+    }
+
+    void bind(int slot, Hotspot hotspot) {
+        owners[slot] = hotspot;
+    }
+
+    void release(int slot) {
+        owners[slot] = null;
+        visible[slot] = false;
+        collapse(slot);
+        freeSlots[freeCount++] = slot;
+        liveCount--;
+    }
+
+    void setVisible(int slot, boolean value) {
+        visible[slot] = value;
+        if (!value) collapse(slot);
+    }
+
+    /**
+     * Recomputes at most {@code budget} slots, round-robin, then pushes points and texture
+     * coordinates to the mesh. Wave i of a slot starts i seconds after the hotspot appeared
+     * and then grows from START_SIZE to END_SIZE (ease-out) while fading out over each period.
+     */
+    void update(long now, double zoom, int budget) {
+        int n = highWater;
+        if (n == 0) return;
+        if (cursor >= n) cursor = 0;
+        for (int k = Math.min(n, budget); k > 0; k--) {
+            int slot = cursor;
+            if (++cursor == n) cursor = 0;
+            if (owners[slot] == null || !visible[slot]) continue;
+
+            for (int w = 0; w < WAVES; w++) {
+                long local = now - startNanos[slot] - w * WAVE_DELAY_NS;
+                if (local < 0) {
+                    writeQuad(slot, w, 0.0, 0);
+                    continue;
+                }
+                double phase = (double) (local % PERIOD_NS) / PERIOD_NS;
+                double size = Interpolator.EASE_OUT.interpolate(START_SIZE, END_SIZE, phase);
+                int level = (int) Math.round((1.0 - phase) * (ALPHA_LEVELS - 1));
+                writeQuad(slot, w, size * zoom * frames[slot * FRAME_DOUBLES + 9], level);
+            }
+        }
+        mesh.getPoints().set(0, points, 0, n * VERTS_PER_SLOT * 3);
+        mesh.getTexCoords().set(0, texCoords, 0, n * VERTS_PER_SLOT * 2);
+    }
+
+    private Hotspot hotspotAt(PickResult pick) {
+        if (pick == null || pick.getIntersectedNode() != view) return null;
+        int face = pick.getIntersectedFace();
+        if (face < 0) return null;
+        int slot = face / FACES_PER_SLOT;
+        return slot < highWater ? owners[slot] : null;
+    }
+
+    private void writeQuad(int slot, int wave, double s, int level) {
+        int f = slot * FRAME_DOUBLES;
+        int p = (slot * VERTS_PER_SLOT + wave * 4) * 3;
+        for (int corner = 0; corner < 4; corner++) {
+            double su = (corner == 0 || corner == 3) ? -s : s;
+            double sv = corner < 2 ? -s : s;
+            points[p++] = (float) (frames[f]     + frames[f + 3] * su + frames[f + 6] * sv);
+            points[p++] = (float) (frames[f + 1] + frames[f + 4] * su + frames[f + 7] * sv);
+            points[p++] = (float) (frames[f + 2] + frames[f + 5] * su + frames[f + 8] * sv);
+        }
+
+        // atlas frames are stacked vertically; inset a little so neighbours never bleed in
+        float v0 = (level + 0.01f) / ALPHA_LEVELS;
+        float v1 = (level + 0.99f) / ALPHA_LEVELS;
+        int t = (slot * VERTS_PER_SLOT + wave * 4) * 2;
+        texCoords[t]     = 0; texCoords[t + 1] = v0;
+        texCoords[t + 2] = 1; texCoords[t + 3] = v0;
+        texCoords[t + 4] = 1; texCoords[t + 5] = v1;
+        texCoords[t + 6] = 0; texCoords[t + 7] = v1;
+    }
+
+    /**
+     * Shrinks the slot to zero-area quads and writes just that range to the mesh, so the rings
+     * disappear even if no further frame runs (the clock stops once the last hotspot is gone).
+     */
+    private void collapse(int slot) {
+        for (int w = 0; w < WAVES; w++) writeQuad(slot, w, 0.0, 0);
+        int p = slot * VERTS_PER_SLOT * 3;
+        int t = slot * VERTS_PER_SLOT * 2;
+        mesh.getPoints().set(p, points, p, VERTS_PER_SLOT * 3);
+        mesh.getTexCoords().set(t, texCoords, t, VERTS_PER_SLOT * 2);
+    }
+
+    private void grow(int newCapacity) {
+        points = Arrays.copyOf(points, newCapacity * VERTS_PER_SLOT * 3);
+        texCoords = Arrays.copyOf(texCoords, newCapacity * VERTS_PER_SLOT * 2);
+        frames = Arrays.copyOf(frames, newCapacity * FRAME_DOUBLES);
+        startNanos = Arrays.copyOf(startNanos, newCapacity);
+        visible = Arrays.copyOf(visible, newCapacity);
+        owners = Arrays.copyOf(owners, newCapacity);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+
+        // faces never change: each quad is two triangles, texture index = point index
+        int[] faces = new int[(newCapacity - capacity) * FACES_PER_SLOT * 6];
+        int i = 0;
+        for (int q = capacity * WAVES; q < newCapacity * WAVES; q++) {
+            int b = q * 4;
+            faces[i++] = b;     faces[i++] = b;     faces[i++] = b + 1; faces[i++] = b + 1; faces[i++] = b + 2; faces[i++] = b + 2;
+            faces[i++] = b;     faces[i++] = b;     faces[i++] = b + 2; faces[i++] = b + 2; faces[i++] = b + 3; faces[i++] = b + 3;
+        }
+        capacity = newCapacity;
+
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(texCoords);
+        mesh.getFaces().addAll(faces);
+    }
+}
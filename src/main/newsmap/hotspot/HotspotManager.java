@@ -1,23 +1,7 @@
 package main.newsmap.hotspot;
 
-import javafx.animation.Animation;
-import javafx.animation.Interpolator;
-import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
-import javafx.animation.Timeline;
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.Point3D;
-import javafx.scene.Group;
-import javafx.scene.effect.BlendMode;
-import javafx.scene.image.Image;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.CullFace;
-import javafx.scene.shape.MeshView;
-import javafx.scene.shape.TriangleMesh;
-import javafx.util.Duration;
 import main.newsmap.gfx.TextureFactory;
 import main.newsmap.model.Article;
 import main.newsmap.scene.Globe3DFactory;
@@ -26,9 +10,15 @@ import main.newsmap.util.CoordinateUtils;
 import main.newsmap.model.HotspotCategory;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static main.newsmap.scene.Globe3DFactory.CAMERA_MAX_Z;
+import static main.newsmap.scene.Globe3DFactory.CAMERA_MIN_Z;
+
 
 public class HotspotManager {
 
@@ -37,153 +27,148 @@ public class HotspotManager {
     private final TextureFactory textures;
     private final List<Hotspot> hotspots = new ArrayList<>();
 
+    // all pulses are drawn by one batched mesh; each shown marker owns a slot in it
+    private final HotspotLayer layer;
+    private final Map<Hotspot, Integer> slots = new IdentityHashMap<>();
+    private final PulseEngine pulseEngine;
+
+    // nearby hotspots are merged into one marker per cell of the level matching the zoom
+    private final HotspotClusterIndex clusters = new HotspotClusterIndex();
+    private int clusterLevel;
+    private final Set<HotspotCategory> activeCategories = new HashSet<>();
+
     public HotspotManager(Globe3DFactory globe, NewsPanel newsPanel, TextureFactory textures) {
         this.globe = globe;
         this.newsPanel = newsPanel;
         this.textures = textures;
+        this.layer = new HotspotLayer(
+                textures.ringAtlasMaterial(128, Color.RED, HotspotLayer.ALPHA_LEVELS, HotspotLayer.BASE_OPACITY),
+                this::onHotspotClicked);
+        this.pulseEngine = new PulseEngine(globe.getGlobeGroup(), layer);
+        globe.getGlobeGroup().getChildren().add(layer.view());
+
+        clusterLevel = levelFor(globe.getCamera().getTranslateZ());
+        globe.getCamera().translateZProperty().addListener((obs, o, z) -> setClusterLevel(levelFor(z.doubleValue())));
     }
 
 
     public Hotspot spawnHotspot(double latDeg, double lonDeg, List<Article> articles, HotspotCategory category, String location) {
-
-
-        Point3D center = CoordinateUtils.latLonToPoint(latDeg, lonDeg, globe.getEarthRadius() + 2.5);
-
-
-        Point3D n = center.normalize();
-        Point3D up = new Point3D(0, -1, 0);
-        if (Math.abs(n.dotProduct(up)) > 0.99) up = new Point3D(1, 0, 0);
-        Point3D u = up.crossProduct(n).normalize();
-        Point3D v = n.crossProduct(u).normalize();
-
-
-        Image ring = textures.makeRingTexture(128, Color.RED);
-        PhongMaterial mat = new PhongMaterial();
-        mat.setDiffuseMap(ring);
-        mat.setSpecularColor(Color.TRANSPARENT);
-
-
-        Group waveGroup = new Group();
-        waveGroup.setPickOnBounds(true);
-        globe.getGlobeGroup().getChildren().add(waveGroup);
-
-
-        for (int i = 0; i < 2; i++) {
-            TriangleMesh mesh = quadMesh();
-            MeshView wave = new MeshView(mesh);
-            wave.setMaterial(mat);
-            wave.setCullFace(CullFace.NONE);
-            wave.setBlendMode(BlendMode.ADD);
-            wave.setOpacity(0.0);
-
-
-            final double startSize = 0.0;
-            final double endSize = 10.0;
-            final double baseOpacity = 0.30;
-
-            DoubleProperty sizeProp = new SimpleDoubleProperty(startSize);
-
-            Runnable updater = () -> {
-                double zoom = globe.getGlobeGroup().getScaleX();
-                double s = sizeProp.get() * zoom;
-                Point3D p0 = center.add(u.multiply(-s)).add(v.multiply(-s));
-                Point3D p1 = center.add(u.multiply( s)).add(v.multiply(-s));
-                Point3D p2 = center.add(u.multiply( s)).add(v.multiply( s));
-                Point3D p3 = center.add(u.multiply(-s)).add(v.multiply( s));
-                ((TriangleMesh) wave.getMesh()).getPoints().setAll(
-                        (float)p0.getX(), (float)p0.getY(), (float)p0.getZ(),
-                        (float)p1.getX(), (float)p1.getY(), (float)p1.getZ(),
-                        (float)p2.getX(), (float)p2.getY(), (float)p2.getZ(),
-                        (float)p3.getX(), (float)p3.getY(), (float)p3.getZ()
-                );
-            };
-
-            sizeProp.addListener((obs, o, p) -> updater.run());
-            globe.getGlobeGroup().scaleXProperty().addListener((obs, o, p) -> updater.run());
-            globe.getGlobeGroup().scaleYProperty().addListener((obs, o, p) -> updater.run());
-            globe.getGlobeGroup().scaleZProperty().addListener((obs, o, p) -> updater.run());
-            updater.run();
-
-            waveGroup.getChildren().add(wave);
-
-            Timeline anim = new Timeline(
-                    new KeyFrame(Duration.ZERO,
-                            new KeyValue(wave.opacityProperty(), baseOpacity),
-                            new KeyValue(sizeProp, startSize)
-                    ),
-                    new KeyFrame(Duration.seconds(3.0),
-                            new KeyValue(wave.opacityProperty(), 0.0),
-                            new KeyValue(sizeProp, endSize, Interpolator.EASE_OUT)
-                    )
-            );
-            anim.setCycleCount(Animation.INDEFINITE);
-            anim.setDelay(Duration.seconds(i));
-            anim.play();
-        }
-
             //will get location from cluster + category
-        Hotspot hs = new Hotspot(latDeg, lonDeg, articles, category, waveGroup, location);
-        waveGroup.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
-            if (e.isStillSincePress()) onHotspotClicked(hs);
-            e.consume();
-        });
+        Hotspot hs = new Hotspot(latDeg, lonDeg, articles, category, location);
+
+        clusters.add(hs);
+        redraw(clusters.clusterOf(hs, clusterLevel));
 
         hotspots.add(hs);
+        pulseEngine.refresh();
         return hs;
     }
 
 
     public void clearAll() {
-        for (Hotspot h : hotspots) {
-            globe.getGlobeGroup().getChildren().remove(h.node());
+        for (HotspotClusterIndex.Cluster c : clusters.clusters(clusterLevel)) {
+            hide(c);
         }
+        clusters.clear();
         hotspots.clear();
+        pulseEngine.refresh();
     }
 
 
     public void remove(Hotspot h) {
-        globe.getGlobeGroup().getChildren().remove(h.node());
-        hotspots.remove(h);
+        if (!hotspots.remove(h)) return;
+        HotspotClusterIndex.Cluster[] former = clusters.remove(h);
+        if (former != null) redraw(former[clusterLevel]);
+        pulseEngine.refresh();
     }
 
 
     public void applyCategoryFilters(Set<HotspotCategory> categories) {
-        boolean showAll = categories.isEmpty();
+        activeCategories.clear();
+        activeCategories.addAll(categories);
+
+        for (HotspotClusterIndex.Cluster c : clusters.clusters(clusterLevel)) {
+            Integer slot = c.marker != null ? slots.get(c.marker) : null;
+            if (slot != null) layer.setVisible(slot, matchesFilter(c));
+        }
+    }
+
+
+    /**
+     * Swaps the shown markers to another clustering level. Only the markers change; the
+     * clusters of every level are kept up to date as hotspots come and go.
+     */
+    private void setClusterLevel(int level) {
+        if (level == clusterLevel) return;
+        for (HotspotClusterIndex.Cluster c : clusters.clusters(clusterLevel)) hide(c);
+        clusterLevel = level;
+        for (HotspotClusterIndex.Cluster c : clusters.clusters(clusterLevel)) show(c);
+        pulseEngine.refresh();
+    }
+
+
+    private void redraw(HotspotClusterIndex.Cluster c) {
+        if (c == null) return;
+        hide(c);
+        if (c.size() > 0) show(c);
+    }
+
+
+    private void show(HotspotClusterIndex.Cluster c) {
+        Hotspot marker = c.size() == 1 ? c.members.get(0) : aggregate(c);
+        double scale = 1.0 + Math.log(c.size()) / Math.log(4); // every 4x more hotspots adds one base size
+
+        Point3D center = CoordinateUtils.latLonToPoint(marker.latDeg(), marker.lonDeg(), globe.getEarthRadius() + 2.5);
 
-        for (Hotspot hotspot : hotspots) {   // your internal hotspot list
-            if (showAll) {
-                hotspot.setVisible(true);
-                continue;
-            }
 
-            boolean matches = categories.contains(hotspot.getCategory());
-            hotspot.setVisible(matches);
+        Point3D n = center.normalize();
+        Point3D up = new Point3D(0, -1, 0);
+        if (Math.abs(n.dotProduct(up)) > 0.99) up = new Point3D(1, 0, 0);
+        Point3D u = up.crossProduct(n).normalize();
+        Point3D v = n.crossProduct(u).normalize();
+
+
+        int slot = layer.allocate(center, u, v, scale);
+        layer.bind(slot, marker);
+        layer.setVisible(slot, matchesFilter(c));
+        slots.put(marker, slot);
+        c.marker = marker;
+    }
+
+
+    private void hide(HotspotClusterIndex.Cluster c) {
+        if (c.marker == null) return;
+        Integer slot = slots.remove(c.marker);
+        if (slot != null) layer.release(slot);
+        c.marker = null;
+    }
+
+
+    /**
+     * One marker standing in for every hotspot of the cluster, placed at their centroid. Articles and category
+     * come from the cluster's running aggregate, so this does not walk the members.
+     */
+    private static Hotspot aggregate(HotspotClusterIndex.Cluster c) {
+        String location = c.members.get(0).location() + " +" + (c.size() - 1) + " nearby";
+        return new Hotspot(c.centroidLat(), c.centroidLon(), c.articles(), c.category(), location);
+    }
+
+
+    private boolean matchesFilter(HotspotClusterIndex.Cluster c) {
+        if (activeCategories.isEmpty()) return true;
+        for (HotspotCategory category : activeCategories) {
+            if (category != null && c.hasCategory(category)) return true;
         }
+        return false;
     }
 
 
-    private void onHotspotClicked(Hotspot hs) {
-        newsPanel.show(hs, null);
+    private static int levelFor(double cameraZ) {
+        return HotspotClusterIndex.levelForCameraZ(cameraZ, CAMERA_MIN_Z, CAMERA_MAX_Z);
     }
 
 
-    private static TriangleMesh quadMesh() {
-        TriangleMesh mesh = new TriangleMesh();
-        mesh.getTexCoords().addAll(
-                0,0, 1,0, 1,1, 0,1
-        );
-
-        mesh.getPoints().addAll(
-                0,0,0,
-                0,0,0,
-                0,0,0,
-                0,0,0
-        );
-        mesh.getFaces().addAll(
-                0,0, 1,1, 2,2,
-                0,0, 2,2, 3,3
-        );
-        return mesh;
+    private void onHotspotClicked(Hotspot hs) {
+        newsPanel.show(hs, null);
     }
 }
-
@@ -0,0 +1,40 @@
+package main.newsmap.hotspot;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Group;
+
+/**
+ * One animation clock for every hotspot pulse. Each frame it asks the {@link HotspotLayer}
+ * to derive every wave's phase from the shared clock and rewrite the batched mesh.
+ *
+ * Per-frame work is bounded: with more than {@link #MAX_SLOTS_PER_FRAME} hotspots the layer
+ * walks them round-robin, so each one is refreshed every few frames instead.
+ */
+final class PulseEngine extends AnimationTimer {
+    static final int MAX_SLOTS_PER_FRAME = 20_000;
+
+    private final Group globeGroup;
+    private final HotspotLayer layer;
+    private boolean running = false;
+
+    PulseEngine(Group globeGroup, HotspotLayer layer) {
+        this.globeGroup = globeGroup;
+        this.layer = layer;
+    }
+
+    /** Starts or stops the clock depending on whether any hotspot is left to animate. */
+    void refresh() {
+        if (!layer.isEmpty() && !running) {
+            running = true;
+            start();
+        } else if (layer.isEmpty() && running) {
+            running = false;
+            stop();
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        layer.update(now, globeGroup.getScaleX(), MAX_SLOTS_PER_FRAME);
+    }
+}
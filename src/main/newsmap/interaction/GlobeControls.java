@@ -11,6 +11,7 @@ import javafx.scene.input.PickResult;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.transform.Rotate;
 import main.newsmap.ui.OverlayPane;
+import main.newsmap.geo.BorderLod;
 import main.newsmap.geo.CountryFinder;
 
 import static main.newsmap.ui.OverlayPane.countryLabel;
@@ -22,9 +23,10 @@ public class GlobeControls {
     private final Group globeGroup;
 
     private final OverlayPane overlay;
-    private final CountryFinder countryFinder;
+    private CountryFinder countryFinder;
     private final double EARTH_RADIUS;
     private PerspectiveCamera camera;
+    private BorderLod borderLod;
     private final Rotate rotateX = new Rotate(0, Rotate.X_AXIS);
     private final Rotate rotateY = new Rotate(0, Rotate.Y_AXIS);
     private double anchorX, anchorY;
@@ -59,6 +61,17 @@ public class GlobeControls {
         enableZoom();
         enableHover();
     }
+    /** Country lookup for the hover label; hovering shows nothing until one is set. */
+    public void setCountryFinder(CountryFinder finder) {
+        this.countryFinder = finder;
+    }
+
+    /** Border level of detail that follows the camera distance on zoom. */
+    public void setBorderLod(BorderLod lod) {
+        this.borderLod = lod;
+        if (lod != null && camera != null) lod.updateForCameraZ(camera.getTranslateZ());
+    }
+
     private void enableRotation() {
         sub.setOnMousePressed(e -> {
             if (e.getButton() == MouseButton.PRIMARY) {
@@ -87,6 +100,7 @@ public class GlobeControls {
                 return;
             }
             lastUpdate = now;
+            if (countryFinder == null) return;
 
             PickResult pick = e.getPickResult();
 
@@ -138,6 +152,7 @@ public class GlobeControls {
             double dz = e.getDeltaY() * 0.7;
             double target = camera.getTranslateZ() + dz;
             camera.setTranslateZ(clamp(target, -2500, -450));
+            if (borderLod != null) borderLod.updateForCameraZ(camera.getTranslateZ());
         });
     }
 
@@ -5,7 +5,9 @@ public enum HotspotCategory {
     BUSINESS("Business"),
     TECHNOLOGY("Technology"),
     HEALTH("Health"),
-    WAR("War");
+    WAR("War"),
+    // stored articles not sorted into a topic yet
+    GENERAL("General");
 
 
     private final String displayName;
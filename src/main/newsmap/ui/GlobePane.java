@@ -1,5 +1,6 @@
 package main.newsmap.ui;
 
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.SubScene;
@@ -11,16 +12,29 @@ import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.Sphere;
 import main.newsmap.scene.Globe3DFactory;
 import main.newsmap.geo.BorderMeshFactory;
-import main.newsmap.geo.GeoJsonLoader;
+import main.newsmap.geo.WorldGeometry;
 import main.newsmap.geo.CountryFinder;
 import main.newsmap.interaction.GlobeControls;
 import main.newsmap.hotspot.HotspotManager;
 import main.newsmap.gfx.TextureFactory;
 import main.newsmap.model.Article;
 import main.newsmap.model.HotspotCategory;
-
+import storage.ArticleStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static global.Constants.ARTICLE_STORE_DIR;
 import static main.newsmap.scene.Globe3DFactory.EARTH_RADIUS;
 
 public class GlobePane extends StackPane {
@@ -28,8 +42,20 @@ public class GlobePane extends StackPane {
     private final NewsPanel newsPanel;
     private final SubScene sub;
     private final Globe3DFactory globe;
-    private final CountryFinder countryFinder;
     private final HotspotManager hotspotManager;
+    private final StartupTimings timings = new StartupTimings();
+
+    // how far back the globe shows stored articles
+    private static final Duration HOTSPOT_WINDOW = Duration.ofHours(2);
+
+    // background work of the staged startup; daemon threads so they never keep the app alive
+    private static final AtomicInteger LOADER_IDS = new AtomicInteger();
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r);
+        t.setName("GlobeLoader-" + LOADER_IDS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
 
     public GlobePane() {
         this.setStyle("-fx-background-color: #0b1020;");
@@ -53,12 +79,6 @@ public class GlobePane extends StackPane {
 
         sub = globe.createSubScene(1200, 800);
 
-        var features = GeoJsonLoader.loadFromClasspath("/world.json");
-        var borders = BorderMeshFactory.buildFromFeatures(features, globe.getEarthRadius());
-        borders.setMouseTransparent(true);
-        globe.getGlobeGroup().getChildren().add(borders);
-
-
         overlay = new OverlayPane(this);
         overlay.setMouseTransparent(true);
         StackPane.setAlignment(overlay, Pos.TOP_LEFT);
@@ -68,9 +88,6 @@ public class GlobePane extends StackPane {
         newsPanel.setTranslateX(300);
         StackPane.setAlignment(newsPanel, Pos.CENTER_RIGHT);
 
-
-        countryFinder = new CountryFinder(features);
-
         hotspotManager = new HotspotManager(globe, newsPanel, new TextureFactory());
 
         FilterBar filterBar = new FilterBar(hotspotManager);
@@ -86,25 +103,113 @@ public class GlobePane extends StackPane {
                 sub,
                 globe.getGlobeGroup(),
                 overlay,
-                countryFinder,
+                null,
                 EARTH_RADIUS
         );
         controls.attach();
+        timings.mark("globe shown");
 
-        /* TODO
-            Will be fetching news and use embedding techniques and cluster them by tags,location, and topic.
-            Finally we will also be create a database to store each article with their location with 1 day expire time.
-            We will most probably make a timeline because we just want to show the latest (last 2 hours or so)
-            and users can access even earlier news using the timeline.
-         */
+        streamHotspots(loadWorldAsync(controls));
+    }
+
+    /**
+     * Loads the border geometry off the FX thread, then builds the border meshes and the
+     * country index from it in parallel. Each result is attached on the FX thread as soon as
+     * it is ready, so the globe stays interactive the whole time. Returns the country index.
+     */
+    private CompletableFuture<CountryFinder> loadWorldAsync(GlobeControls controls) {
+        CompletableFuture<WorldGeometry> geometry = CompletableFuture.supplyAsync(
+                () -> timings.time("geometry load", () ->
+                        WorldGeometry.load(Path.of(WorldGeometry.DEFAULT_BINARY_PATH), "/world.json")),
+                LOADER);
+
+        geometry.thenApplyAsync(g -> timings.time("border meshes", () ->
+                        BorderMeshFactory.buildLod(g, globe.getEarthRadius())), LOADER)
+                .thenAccept(borders -> Platform.runLater(() -> {
+                    borders.getView().setMouseTransparent(true);
+                    globe.getGlobeGroup().getChildren().add(borders.getView());
+                    controls.setBorderLod(borders);
+                    timings.mark("borders attached");
+                }))
+                .exceptionally(e -> loadFailed("border meshes", e));
+
+        CompletableFuture<CountryFinder> finder =
+                geometry.thenApplyAsync(g -> timings.time("country index", () -> new CountryFinder(g)), LOADER);
+        finder.thenAccept(f -> Platform.runLater(() -> {
+                    controls.setCountryFinder(f);
+                    timings.mark("country hover ready");
+                }))
+                .exceptionally(e -> loadFailed("country index", e));
+        return finder;
+    }
+
+    private static Void loadFailed(String phase, Throwable e) {
+        System.err.println("[STARTUP] " + phase + " failed: " + e.getMessage());
+        return null;
+    }
+
+    /**
+     * Hands hotspots to the FX thread one at a time as their data becomes available: one per location the crawler
+     * stored articles published in the last {@link #HOTSPOT_WINDOW} at, labelled with the country once the country
+     * index is ready. Shows the demo hotspots while there is no store to read.
+     */
+    private void streamHotspots(CompletableFuture<CountryFinder> countryFinder) {
+        LOADER.execute(() -> {
+
+            /* TODO
+                Cluster the stored articles by topic as well and give each cluster its category, and add a timeline
+                so users can go back past the last two hours.
+             */
+            Map<List<Double>, List<Article>> byLocation = storedHotspots();
+            if (byLocation.isEmpty()) {
+                spawnDemoHotspots();
+                return;
+            }
+            for (Map.Entry<List<Double>, List<Article>> e : byLocation.entrySet()) {
+                double lat = e.getKey().get(0), lon = e.getKey().get(1);
+                List<Article> articles = e.getValue();
+                countryFinder.handle((finder, failure) -> {
+                    String country = finder == null ? null : finder.findCountry(lat, lon);
+                    return country != null ? country : String.format("%.2f, %.2f", lat, lon);
+                }).thenAccept(location -> spawnLater(lat, lon, articles, HotspotCategory.GENERAL, location));
+            }
+            countryFinder.handle((finder, failure) -> null)
+                    .thenRun(() -> Platform.runLater(() -> timings.mark("hotspots spawned")));
+        });
+    }
+
+    /** Located articles of the last {@link #HOTSPOT_WINDOW} in the crawler's store, newest first per location. */
+    private static Map<List<Double>, List<Article>> storedHotspots() {
+        Map<List<Double>, List<Article>> byLocation = new LinkedHashMap<>();
+        try (ArticleStore store = ArticleStore.openReadOnly(Path.of(ARTICLE_STORE_DIR))) {
+            for (ArticleStore.Hit hit : store.publishedWithin(HOTSPOT_WINDOW, null, null)) {
+                if (!hit.located()) continue;
+                storage.Article a = hit.article();
+                byLocation.computeIfAbsent(List.of(hit.lat(), hit.lon()), k -> new ArrayList<>())
+                        .add(new Article(a.title(), a.source(), a.url(), storage.Article.epochMillis(a.publishTime(), 0)));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[STARTUP] reading stored articles failed: " + e.getMessage());
+        }
+        byLocation.values().forEach(list -> list.sort(Comparator.comparingLong(Article::timestamp).reversed()));
+        return byLocation;
+    }
+
+    private void spawnDemoHotspots() {
         var list = List.of(new Article("Trump says he's terminating trade talks with Canada over TV ad about tariffs",
                 "ABC-NEWS",
                 "https://abcnews.go.com/Politics/trump-terminating-trade-talks-canada-tv-ad-tariffs/story?id=126821528",
                 System.currentTimeMillis()));
-        hotspotManager.spawnHotspot(52.5200, 13.4050, list, HotspotCategory.POLITICS, "Berlin, Germany");
-        hotspotManager.spawnHotspot(40.7128, -74.0060, list, HotspotCategory.BUSINESS, "New York, USA");
-        hotspotManager.spawnHotspot(41.0082, 28.9784, list, HotspotCategory.TECHNOLOGY, "Istanbul, Turkey");
-        hotspotManager.spawnHotspot(51.509865, -0.118092, list, HotspotCategory.HEALTH, "London, UK");
+        spawnLater(52.5200, 13.4050, list, HotspotCategory.POLITICS, "Berlin, Germany");
+        spawnLater(40.7128, -74.0060, list, HotspotCategory.BUSINESS, "New York, USA");
+        spawnLater(41.0082, 28.9784, list, HotspotCategory.TECHNOLOGY, "Istanbul, Turkey");
+        spawnLater(51.509865, -0.118092, list, HotspotCategory.HEALTH, "London, UK");
+        Platform.runLater(() -> timings.mark("hotspots spawned"));
+    }
+
+    private void spawnLater(double latDeg, double lonDeg, List<Article> articles,
+                            HotspotCategory category, String location) {
+        Platform.runLater(() -> hotspotManager.spawnHotspot(latDeg, lonDeg, articles, category, location));
     }
 
     public void bindSubSceneTo(javafx.scene.Scene scene) {
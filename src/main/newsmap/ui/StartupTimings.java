@@ -0,0 +1,24 @@
+package main.newsmap.ui;
+
+import java.util.function.Supplier;
+
+/**
+ * Logs how long each startup phase took and when it finished relative to the
+ * construction of the window, so slow phases show up in the console.
+ */
+final class StartupTimings {
+    private static final String PREFIX = "[STARTUP] ";
+    private final long start = System.nanoTime();
+
+    <T> T time(String phase, Supplier<T> work) {
+        long t0 = System.nanoTime();
+        T result = work.get();
+        System.out.printf("%s%s took %d ms on %s%n", PREFIX, phase,
+                (System.nanoTime() - t0) / 1_000_000, Thread.currentThread().getName());
+        return result;
+    }
+
+    void mark(String event) {
+        System.out.printf("%s%s at +%d ms%n", PREFIX, event, (System.nanoTime() - start) / 1_000_000);
+    }
+}
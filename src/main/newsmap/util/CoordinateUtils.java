@@ -12,6 +12,15 @@ public class CoordinateUtils {
         return new Point3D(x, y, z);
     }
 
+    /** Same as {@link #latLonToPoint(double, double, double)} but writes x, y, z into {@code out}. */
+    public static void latLonToPoint(double latDeg, double lonDeg, double radius, double[] out, int offset) {
+        double lat = Math.toRadians(latDeg);
+        double lon = Math.toRadians(lonDeg);
+        out[offset] = radius * Math.cos(lat) * Math.cos(lon);
+        out[offset + 1] = -radius * Math.sin(lat);
+        out[offset + 2] = radius * Math.cos(lat) * Math.sin(lon);
+    }
+
     public static double[] pointToLatLon(Point3D p, double radius) {
         double lat = -Math.asin(p.getY() / radius) * 180 / Math.PI;
         double lon = Math.atan2(p.getZ(), p.getX()) * 180 / Math.PI;
@@ -6,10 +6,12 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
+import java.time.DateTimeException;
+import java.time.Instant;
 import global.Constants.*;
 
 import static global.Constants.ARTICLE_DIR;
+import static global.Constants.timeStampFormatter;
 
 public record Article(
         String id,
@@ -48,15 +50,14 @@ public record Article(
         }
     }
 
-    /**
-     * Appends this article as a single-line JSON object to a batch writer.
-     * This method does NOT catch exceptions — the Crawler is responsible
-     * for handling I/O failures.
-     */
-    public void appendToJsonBatch(Writer writer) throws IOException {
-        writer.write(JSONL_WRITER.writeValueAsString(this));
-        writer.write(System.lineSeparator()); // platform-independent newline
-        // No flush here — Crawler manages flushing for performance.
+    /** Epoch millis of a {@code publishTime} / {@code crawledAt} value, or {@code fallback} if it can't be parsed. */
+    public static long epochMillis(String timestamp, long fallback) {
+        if (timestamp == null || timestamp.isEmpty()) return fallback;
+        try {
+            return Instant.from(timeStampFormatter.parse(timestamp)).toEpochMilli();
+        } catch (DateTimeException e) {
+            return fallback;
+        }
     }
 
     @Override
@@ -0,0 +1,128 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.Deflater;
+
+import static global.Constants.timeStampFormatter;
+
+/**
+ * Compact binary form of an {@link Article}, read back with {@link ArticleView}.
+ * <pre>
+ *   byte      format version (2)
+ *   32 bytes  raw sha256 id
+ *   varint    publish time, epoch millis (zigzag)
+ *   varint    crawl time minus publish time, millis (zigzag)
+ *   varint    source id from a {@link SourceDictionary}
+ *   varint    title length, UTF-8 title
+ *   varint    url length, UTF-8 url
+ *   varint    body length in UTF-8 bytes
+ *   varint    stored body length, then the body: raw UTF-8 if equal to the body length, else raw DEFLATE
+ * </pre>
+ * The fixed-width and numeric fields come first and {@code body} last, so a reader reaches the timestamps without
+ * touching any string and the title without touching the body. The body is most of a record and is deflated on its
+ * own, which shrinks English prose to well under half its size; a body that does not get smaller, such as a very
+ * short one, is kept raw. Version 1 records, which have no stored length and an always raw body, are still read.
+ * Timestamps keep the second precision of {@link global.Constants#timeStampFormatter}; a time that does not parse
+ * is stored as {@link #UNKNOWN_TIME} and read back as "". Null strings are stored as "".
+ */
+public final class ArticleCodec {
+
+    public static final byte VERSION = 2;
+    static final byte VERSION_RAW_BODY = 1;
+    public static final int ID_BYTES = 32;
+    public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private ArticleCodec() {}
+
+    /** Encodes {@code article}, looking up (or assigning) its source id in {@code sources}. */
+    public static byte[] encode(Article article, SourceDictionary sources) throws IOException {
+        return encode(article, sources.id(article.source()));
+    }
+
+    public static byte[] encode(Article article, int sourceId) {
+        byte[] title = utf8(article.title());
+        byte[] url = utf8(article.url());
+        byte[] body = utf8(article.body());
+        byte[] stored = deflate(body);
+        long published = Article.epochMillis(article.publishTime(), UNKNOWN_TIME);
+        long crawled = Article.epochMillis(article.crawledAt(), UNKNOWN_TIME);
+        // an unknown time on either side makes the delta meaningless, so it is stored as-is
+        long crawlDelta = published == UNKNOWN_TIME || crawled == UNKNOWN_TIME ? crawled : crawled - published;
+
+        int size = 1 + ID_BYTES
+                + varintSize(zigzag(published)) + varintSize(zigzag(crawlDelta)) + varintSize(sourceId)
+                + varintSize(title.length) + title.length
+                + varintSize(url.length) + url.length
+                + varintSize(body.length) + varintSize(stored.length) + stored.length;
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(VERSION);
+        out.put(HEX.parseHex(article.id()));
+        putVarint(out, zigzag(published));
+        putVarint(out, zigzag(crawlDelta));
+        putVarint(out, sourceId);
+        putVarint(out, title.length).put(title);
+        putVarint(out, url.length).put(url);
+        putVarint(out, body.length);
+        putVarint(out, stored.length).put(stored);
+        return out.array();
+    }
+
+    static String formatTime(long millis) {
+        return millis == UNKNOWN_TIME ? "" : timeStampFormatter.format(Instant.ofEpochMilli(millis));
+    }
+
+    /** Raw DEFLATE of {@code data} if that is shorter, else {@code data} itself. */
+    private static byte[] deflate(byte[] data) {
+        if (data.length == 0) return data;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            // output that reaches the input's length is no gain, so it never needs a bigger buffer
+            byte[] out = new byte[data.length];
+            int n = 0;
+            while (!deflater.finished() && n < out.length) {
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            return deflater.finished() && n < data.length ? Arrays.copyOf(out, n) : data;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int varintSize(long v) {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    private static ByteBuffer putVarint(ByteBuffer out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        return out.put((byte) v);
+    }
+}
@@ -0,0 +1,797 @@
+package storage;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static global.Constants.*;
+
+/**
+ * Embedded, file-backed store of crawled articles, keyed by their sha256 id and partitioned by crawl time.
+ * <p>
+ * Each partition covers one {@code partitionLength} (an hour by default) and is a directory holding two append-only
+ * files: {@code articles.log} with one length- and CRC-framed record (location and {@link ArticleCodec} bytes) per
+ * article, and
+ * {@code articles.idx} with a fixed-size entry (raw id, offset, length, publish time, source id, location) per
+ * record. Opening the store loads the index files and recovers records that made it into a log but not into its
+ * index; a torn record at the end of a log is cut off. An id → location map in memory answers {@link #get} with a
+ * single positional read. Storing an id again appends a new record and points the id at it, so a refetched article
+ * that changed replaces the old version; the old record stays in its log, marked superseded, until its partition
+ * expires.
+ * <p>
+ * {@link #query} finds articles by publish time, source and region without reading any record it does not return.
+ * Every partition keeps its publish times as epoch millis in a sorted {@code long[]} with the matching ordinals in an
+ * {@code int[]}, posting lists of ordinals per source (sources are numbered through one store-wide dictionary) and
+ * per {@link global.Constants#ARTICLE_STORE_GEO_CELL_DEG}-degree geo cell. Each condition turns into a bit set of
+ * ordinals and the bit sets are intersected; partitions whose publish-time span or sources cannot match are skipped
+ * outright, so the cost of a query follows the number of matches, not the size of the archive.
+ * <p>
+ * Articles expire a whole partition at a time: once a partition ends more than {@code ttl} ago its directory is
+ * deleted together with its indexes, so expiry never rewrites a file.
+ * <p>
+ * {@link #openReadOnly} gives another process, such as the globe, a snapshot of a store the crawler is writing: it
+ * reads the complete records and index entries present when it opens, and never repairs, expires or appends.
+ */
+public final class ArticleStore implements AutoCloseable {
+
+    /** A stored article and where it is located; NaN coordinates if it has no location. */
+    public record Hit(Article article, double lat, double lon) {
+        public boolean located() {
+            return !Double.isNaN(lat);
+        }
+    }
+
+    /** Latitude/longitude box; {@code minLon > maxLon} means it crosses the antimeridian. */
+    public record GeoBox(double minLat, double minLon, double maxLat, double maxLon) {
+        public boolean contains(double lat, double lon) {
+            if (lat < minLat || lat > maxLat) return false;
+            return minLon <= maxLon ? lon >= minLon && lon <= maxLon : lon >= minLon || lon <= maxLon;
+        }
+    }
+
+    private static final String LOG_FILE = "articles.log";
+    private static final String INDEX_FILE = "articles.idx";
+    private static final String SOURCES_FILE = "sources.txt";
+    private static final int RECORD_HEADER = 16;                    // int length, int crc32, float lat, float lon
+    private static final int INDEX_ENTRY = 32 + 8 + 4 + 8 + 4 + 8;  // raw sha256, offset, length, published, source, lat/lon
+    private static final HexFormat HEX = HexFormat.of();
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH-mm'Z'", Locale.ROOT)
+            .withZone(ZoneOffset.UTC);
+
+    private static final int CELL_COLS = (int) Math.ceil(360 / ARTICLE_STORE_GEO_CELL_DEG);
+    private static final int CELL_ROWS = (int) Math.ceil(180 / ARTICLE_STORE_GEO_CELL_DEG);
+
+    /** Growable list of ordinals, in ascending order since ordinals are handed out in append order. */
+    private static final class Postings {
+        int[] ordinals = new int[8];
+        int size;
+
+        void add(int ordinal) {
+            if (size == ordinals.length) ordinals = Arrays.copyOf(ordinals, size * 2);
+            ordinals[size++] = ordinal;
+        }
+
+        void setAll(BitSet bits) {
+            for (int i = 0; i < size; i++) bits.set(ordinals[i]);
+        }
+    }
+
+    private static final class Partition {
+        final long start;
+        final long end;
+        final Path dir;
+        final FileChannel log;
+        final FileChannel index;
+        long logSize;
+
+        // guards everything below; queries share it, appends and the lazy sort take it exclusively
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // per-record columns, by ordinal
+        int count;
+        long[] offsets = new long[64];
+        int[] lengths = new int[64];
+        long[] published = new long[64];
+        float[] lats = new float[64];
+        float[] lons = new float[64];
+        long minPublished = Long.MAX_VALUE;
+        long maxPublished = Long.MIN_VALUE;
+
+        // ordinals whose id was stored again later; skipped by queries and scans
+        final BitSet superseded = new BitSet();
+
+        // secondary indexes
+        final Map<Integer, Postings> bySource = new HashMap<>();
+        final Map<Integer, Postings> byCell = new HashMap<>();
+        // ordinals sorted by publish time; covers the first sortedCount ordinals, the rest are merged in on demand
+        long[] sortedPublished = new long[0];
+        int[] sortedOrdinals = new int[0];
+        int sortedCount;
+
+        Partition(long start, long end, Path dir, boolean readOnly) throws IOException {
+            this.start = start;
+            this.end = end;
+            this.dir = dir;
+            if (readOnly) {
+                this.log = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.READ);
+                try {
+                    this.index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.READ);
+                } catch (IOException e) {
+                    log.close();
+                    throw e;
+                }
+                return;
+            }
+            Files.createDirectories(dir);
+            this.log = FileChannel.open(dir.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.index = FileChannel.open(dir.resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        int add(long offset, int length, long publishedAt, int source, float lat, float lon) {
+            lock.writeLock().lock();
+            try {
+                if (count == offsets.length) {
+                    int n = count * 2;
+                    offsets = Arrays.copyOf(offsets, n);
+                    lengths = Arrays.copyOf(lengths, n);
+                    published = Arrays.copyOf(published, n);
+                    lats = Arrays.copyOf(lats, n);
+                    lons = Arrays.copyOf(lons, n);
+                }
+                int ordinal = count++;
+                offsets[ordinal] = offset;
+                lengths[ordinal] = length;
+                published[ordinal] = publishedAt;
+                lats[ordinal] = lat;
+                lons[ordinal] = lon;
+                minPublished = Math.min(minPublished, publishedAt);
+                maxPublished = Math.max(maxPublished, publishedAt);
+                bySource.computeIfAbsent(source, k -> new Postings()).add(ordinal);
+                if (!Float.isNaN(lat)) byCell.computeIfAbsent(cellOf(lat, lon), k -> new Postings()).add(ordinal);
+                return ordinal;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void supersede(int ordinal) {
+            lock.writeLock().lock();
+            try {
+                superseded.set(ordinal);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /** Merges the ordinals appended since the last query into the publish-time order. */
+        void ensureSorted() {
+            lock.writeLock().lock();
+            try {
+                int n = count;
+                if (sortedCount == n) return;
+                int tail = n - sortedCount;
+                long[] tailKeys = new long[tail];
+                int[] tailOrds = new int[tail];
+                for (int i = 0; i < tail; i++) {
+                    tailOrds[i] = sortedCount + i;
+                    tailKeys[i] = published[sortedCount + i];
+                }
+                sortByKey(tailKeys, tailOrds);
+
+                long[] keys = new long[n];
+                int[] ords = new int[n];
+                int a = 0, b = 0;
+                for (int k = 0; k < n; k++) {
+                    if (b == tail || (a < sortedCount && sortedPublished[a] <= tailKeys[b])) {
+                        keys[k] = sortedPublished[a];
+                        ords[k] = sortedOrdinals[a++];
+                    } else {
+                        keys[k] = tailKeys[b];
+                        ords[k] = tailOrds[b++];
+                    }
+                }
+                sortedPublished = keys;
+                sortedOrdinals = ords;
+                sortedCount = n;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void close() {
+            try {
+                log.close();
+                index.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /** Where an article's record lives. */
+    private record Ref(Partition partition, int ordinal) {}
+
+    private final Path root;
+    private final long partitionMillis;
+    private final Duration ttl;
+    private final boolean readOnly;
+    private final ConcurrentSkipListMap<Long, Partition> partitions = new ConcurrentSkipListMap<>();
+    private final Map<String, Ref> ids = new ConcurrentHashMap<>();
+    // source ids of records and index entries, persisted in sources.txt
+    private final SourceDictionary sources;
+    // writes and partition changes; reads only use positional reads and the partition locks
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private ArticleStore(Path root, Duration partitionLength, Duration ttl, SourceDictionary sources,
+                         boolean readOnly) {
+        this.root = root;
+        this.sources = sources;
+        this.partitionMillis = partitionLength.toMillis();
+        this.ttl = ttl;
+        this.readOnly = readOnly;
+    }
+
+    /** Store with the partition length and TTL from {@link global.Constants}. */
+    public static ArticleStore open(Path root) throws IOException {
+        return open(root, ARTICLE_STORE_PARTITION, ARTICLE_STORE_TTL);
+    }
+
+    /** Opens (or creates) the store at {@code root}, dropping partitions that expired while it was closed. */
+    public static ArticleStore open(Path root, Duration partitionLength, Duration ttl) throws IOException {
+        if (partitionLength.toMillis() <= 0) throw new IllegalArgumentException("Partition length must be positive.");
+        Files.createDirectories(root);
+        ArticleStore store = new ArticleStore(root, partitionLength, ttl,
+                SourceDictionary.open(root.resolve(SOURCES_FILE)), false);
+        store.loadPartitions();
+        int dropped = store.expire(Instant.now());
+        System.out.println(ARTICLE_STORE_PREFIX + "Opened " + root + ": " + store.size() + " articles in "
+                + store.partitions.size() + " partitions (" + dropped + " expired)");
+        return store;
+    }
+
+    /**
+     * Snapshot of the store at {@code root} as it is now, for reading while another process writes it; empty if
+     * there is no store. Partitions past the TTL are skipped but left for the writer to delete.
+     */
+    public static ArticleStore openReadOnly(Path root) throws IOException {
+        ArticleStore store = new ArticleStore(root, ARTICLE_STORE_PARTITION, ARTICLE_STORE_TTL,
+                SourceDictionary.open(root.resolve(SOURCES_FILE)), true);
+        if (Files.isDirectory(root)) store.loadPartitions();
+        return store;
+    }
+
+    private void loadPartitions() throws IOException {
+        long cutoff = Instant.now().minus(ttl).toEpochMilli();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                long start;
+                try {
+                    start = Instant.from(PARTITION_NAME.parse(dir.getFileName().toString())).toEpochMilli();
+                } catch (RuntimeException e) {
+                    continue; // not one of ours
+                }
+                if (readOnly && start + partitionMillis <= cutoff) continue;
+                try {
+                    partitions.put(start, new Partition(start, start + partitionMillis, dir, readOnly));
+                } catch (NoSuchFileException e) {
+                    if (!readOnly) throw e; // the writer is creating it right now, or expiring it
+                }
+            }
+        }
+        // oldest first, so an id stored again in a later partition ends up pointing at its latest record
+        for (Partition p : partitions.values()) {
+            load(p);
+        }
+    }
+
+    /** Same as {@link #put(Article, double, double)} for an article without a location. */
+    public boolean put(Article article) throws IOException {
+        return put(article, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Appends {@code article} to the partition of its crawl time, located at {@code lat}/{@code lon} (NaN if
+     * unknown). An article already stored under the same id is replaced. Returns false if the article is older than
+     * the TTL.
+     */
+    public boolean put(Article article, double lat, double lon) throws IOException {
+        if (readOnly) throw new IllegalStateException("Article store " + root + " is open read-only");
+        long crawledAt = Article.epochMillis(article.crawledAt(), System.currentTimeMillis());
+        long publishedAt = Article.epochMillis(article.publishTime(), crawledAt);
+        byte[] rawId = HEX.parseHex(article.id());
+
+        writeLock.lock();
+        try {
+            Partition p = partitionFor(crawledAt);
+            if (p == null) return false;
+            int source = sources.id(article.source());
+            byte[] data = ArticleCodec.encode(article, source);
+
+            ByteBuffer record = encodeRecord(data, (float) lat, (float) lon);
+            long offset = p.logSize;
+            writeFully(p.log, record, offset);
+            p.logSize += record.limit();
+
+            // the index entry goes in after the record, so a crash between the two is repaired by load()
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+            entry.put(rawId).putLong(offset).putInt(data.length).putLong(publishedAt).putInt(source)
+                    .putFloat((float) lat).putFloat((float) lon).flip();
+            writeFully(p.index, entry, p.index.size());
+
+            int ordinal = p.add(offset, data.length, publishedAt, source, (float) lat, (float) lon);
+            point(article.id(), p, ordinal);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** The stored article with this id, or null. */
+    public Article get(String id) throws IOException {
+        Ref ref = ids.get(id);
+        if (ref == null) return null;
+        Hit hit = read(ref.partition(), ref.ordinal());
+        return hit == null ? null : hit.article();
+    }
+
+    public boolean contains(String id) {
+        return ids.containsKey(id);
+    }
+
+    /**
+     * Articles published in {@code [publishedFrom, publishedTo)}, optionally only from {@code source} and only
+     * located inside {@code region}; ordered by partition, then by publish time.
+     */
+    public List<Hit> query(Instant publishedFrom, Instant publishedTo, @Nullable String source, @Nullable GeoBox region)
+            throws IOException {
+        long from = publishedFrom.toEpochMilli();
+        long to = publishedTo.toEpochMilli();
+        Integer sourceId = null;
+        if (source != null) {
+            sourceId = sources.find(source);
+            if (sourceId < 0) return List.of();
+        }
+
+        List<Hit> out = new ArrayList<>();
+        for (Partition p : partitions.values()) {
+            int[] matches = match(p, from, to, sourceId, region);
+            for (int ordinal : matches) {
+                Hit hit = read(p, ordinal);
+                if (hit != null) out.add(hit);
+            }
+        }
+        return out;
+    }
+
+    /** Articles published within the last {@code window}; the globe's "what is happening now". */
+    public List<Hit> publishedWithin(Duration window, @Nullable String source, @Nullable GeoBox region)
+            throws IOException {
+        Instant now = Instant.now();
+        return query(now.minus(window), now.plusMillis(1), source, region);
+    }
+
+    /** Articles crawled within the last {@code window}, oldest first. */
+    public List<Article> recent(Duration window) throws IOException {
+        Instant now = Instant.now();
+        return between(now.minus(window), now);
+    }
+
+    /** Articles crawled in {@code [from, to)}, oldest partition first. Only overlapping partitions are read. */
+    public List<Article> between(Instant from, Instant to) throws IOException {
+        long lo = from.toEpochMilli();
+        long hi = to.toEpochMilli();
+        List<Article> out = new ArrayList<>();
+        Long first = partitions.floorKey(lo);
+        for (Partition p : partitions.subMap(first == null ? Long.MIN_VALUE : first, true, hi, false).values()) {
+            if (p.end > lo) scan(p, lo, hi, out);
+        }
+        return out;
+    }
+
+    /** Deletes every partition that ended more than the TTL before {@code now}; returns how many were dropped. */
+    public int expire(Instant now) throws IOException {
+        if (readOnly) return 0;
+        long cutoff = now.minus(ttl).toEpochMilli();
+        int dropped = 0;
+        writeLock.lock();
+        try {
+            for (Partition p : new ArrayList<>(partitions.headMap(cutoff, true).values())) {
+                if (p.end > cutoff) continue;
+                partitions.remove(p.start);
+                ids.values().removeIf(r -> r.partition() == p);
+                p.close();
+                deleteDirectory(p.dir);
+                dropped++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return dropped;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /** Forces both files of every partition to disk. */
+    public void flush() throws IOException {
+        if (readOnly) return;
+        writeLock.lock();
+        try {
+            for (Partition p : partitions.values()) {
+                p.log.force(false);
+                p.index.force(false);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            flush();
+            for (Partition p : partitions.values()) {
+                p.close();
+            }
+            partitions.clear();
+            ids.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    //===========================================
+    // Index lookups
+    //===========================================
+
+    /** Ordinals of {@code p} matching every given condition, in publish-time order. */
+    private static int[] match(Partition p, long from, long to, @Nullable Integer sourceId, @Nullable GeoBox region) {
+        p.ensureSorted();
+        p.lock.readLock().lock();
+        try {
+            if (p.count == 0 || p.maxPublished < from || p.minPublished >= to) return new int[0];
+
+            BitSet bits = null;
+            if (sourceId != null) {
+                Postings postings = p.bySource.get(sourceId);
+                if (postings == null) return new int[0];
+                bits = new BitSet(p.count);
+                postings.setAll(bits);
+            }
+            if (region != null) {
+                BitSet inRegion = cellsIn(p, region);
+                if (bits == null) bits = inRegion;
+                else bits.and(inRegion);
+                if (bits.isEmpty()) return new int[0];
+            }
+
+            // walk the matching slice of the publish-time order; ordinals come out sorted by time
+            int lo = lowerBound(p.sortedPublished, p.sortedCount, from);
+            int hi = lowerBound(p.sortedPublished, p.sortedCount, to);
+            int[] out = new int[hi - lo];
+            int n = 0;
+            for (int i = lo; i < hi; i++) {
+                int ordinal = p.sortedOrdinals[i];
+                if ((bits == null || bits.get(ordinal)) && !p.superseded.get(ordinal)) out[n++] = ordinal;
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        } finally {
+            p.lock.readLock().unlock();
+        }
+    }
+
+    // called with the partition's read lock held
+    private static BitSet cellsIn(Partition p, GeoBox box) {
+        BitSet bits = new BitSet(p.count);
+        int rowLo = cellRow(box.minLat());
+        int rowHi = cellRow(box.maxLat());
+        int colLo = cellCol(box.minLon());
+        int colHi = cellCol(box.maxLon());
+        int cols = colLo <= colHi ? colHi - colLo + 1 : CELL_COLS - colLo + colHi + 1;
+        long cells = (long) (rowHi - rowLo + 1) * cols;
+
+        if (cells > p.byCell.size()) {
+            // a large box: cheaper to check each occupied cell than to look up every cell of the box
+            for (Map.Entry<Integer, Postings> e : p.byCell.entrySet()) {
+                int row = e.getKey() / CELL_COLS;
+                int col = e.getKey() % CELL_COLS;
+                boolean colIn = colLo <= colHi ? col >= colLo && col <= colHi : col >= colLo || col <= colHi;
+                if (row >= rowLo && row <= rowHi && colIn) addInBox(p, e.getValue(), box, bits);
+            }
+        } else {
+            for (int row = rowLo; row <= rowHi; row++) {
+                for (int c = 0; c < cols; c++) {
+                    Postings postings = p.byCell.get(row * CELL_COLS + (colLo + c) % CELL_COLS);
+                    if (postings != null) addInBox(p, postings, box, bits);
+                }
+            }
+        }
+        return bits;
+    }
+
+    // cells on the box's edge hold articles just outside it, so every candidate is checked exactly
+    private static void addInBox(Partition p, Postings postings, GeoBox box, BitSet bits) {
+        for (int i = 0; i < postings.size; i++) {
+            int ordinal = postings.ordinals[i];
+            if (box.contains(p.lats[ordinal], p.lons[ordinal])) bits.set(ordinal);
+        }
+    }
+
+    private static int cellOf(double lat, double lon) {
+        return cellRow(lat) * CELL_COLS + cellCol(lon);
+    }
+
+    private static int cellRow(double lat) {
+        int row = (int) Math.floor((lat + 90) / ARTICLE_STORE_GEO_CELL_DEG);
+        return Math.max(0, Math.min(CELL_ROWS - 1, row));
+    }
+
+    private static int cellCol(double lon) {
+        return Math.floorMod((int) Math.floor((lon + 180) / ARTICLE_STORE_GEO_CELL_DEG), CELL_COLS);
+    }
+
+    /** First index in {@code keys[0, n)} whose key is {@code >= key}. */
+    private static int lowerBound(long[] keys, int n, long key) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Stable merge sort of {@code keys}, moving {@code values} along with them. */
+    private static void sortByKey(long[] keys, int[] values) {
+        int n = keys.length;
+        long[] k2 = new long[n];
+        int[] v2 = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int a = lo, b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (b >= hi || (a < mid && keys[a] <= keys[b])) {
+                        k2[k] = keys[a];
+                        v2[k] = values[a++];
+                    } else {
+                        k2[k] = keys[b];
+                        v2[k] = values[b++];
+                    }
+                }
+            }
+            System.arraycopy(k2, 0, keys, 0, n);
+            System.arraycopy(v2, 0, values, 0, n);
+        }
+    }
+
+    //===========================================
+    // Partitions
+    //===========================================
+
+    // called with writeLock held; null if the partition is already past the TTL
+    private Partition partitionFor(long millis) throws IOException {
+        long start = Math.floorDiv(millis, partitionMillis) * partitionMillis;
+        Partition p = partitions.get(start);
+        if (p != null) return p;
+
+        if (start + partitionMillis <= Instant.now().minus(ttl).toEpochMilli()) return null;
+        p = new Partition(start, start + partitionMillis,
+                root.resolve(PARTITION_NAME.format(Instant.ofEpochMilli(start))), false);
+        partitions.put(start, p);
+        // a new partition is the natural moment to retire old ones
+        expire(Instant.now());
+        return p;
+    }
+
+    /** Points {@code id} at a newly added record, superseding the one it pointed at before. */
+    private void point(String id, Partition p, int ordinal) {
+        Ref previous = ids.put(id, new Ref(p, ordinal));
+        if (previous != null) previous.partition().supersede(previous.ordinal());
+    }
+
+    /**
+     * Loads a partition's index and recovers records appended after the last index entry. Read-only, the recovered
+     * records are only indexed in memory and nothing is cut off, since the writer may still be appending.
+     */
+    private void load(Partition p) throws IOException {
+        long logSize = p.log.size();
+        long indexed = p.index.size() / INDEX_ENTRY;
+        if (!readOnly) p.index.truncate(indexed * INDEX_ENTRY);
+
+        long end = 0;
+        ByteBuffer entries = ByteBuffer.allocate((int) Math.min(indexed * INDEX_ENTRY, 1 << 20));
+        byte[] rawId = new byte[32];
+        long i = 0;
+        read:
+        while (i < indexed) {
+            entries.clear();
+            entries.limit((int) Math.min(entries.capacity(), (indexed - i) * INDEX_ENTRY));
+            readFully(p.index, entries, i * INDEX_ENTRY);
+            entries.flip();
+            while (entries.hasRemaining()) {
+                entries.get(rawId);
+                long offset = entries.getLong();
+                int length = entries.getInt();
+                long publishedAt = entries.getLong();
+                int source = entries.getInt();
+                float lat = entries.getFloat();
+                float lon = entries.getFloat();
+                if (offset + RECORD_HEADER + length > logSize || source >= sources.size()) {
+                    // index got ahead of a write that never reached disk; the log scan below redoes it
+                    if (!readOnly) p.index.truncate(i * INDEX_ENTRY);
+                    break read;
+                }
+                int ordinal = p.add(offset, length, publishedAt, source, lat, lon);
+                point(HEX.formatHex(rawId), p, ordinal);
+                end = Math.max(end, offset + RECORD_HEADER + length);
+                i++;
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (end + RECORD_HEADER <= logSize) {
+            header.clear();
+            readFully(p.log, header, end);
+            int length = header.getInt(0);
+            if (length < 0 || end + RECORD_HEADER + length > logSize) break;
+
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(p.log, data, end + RECORD_HEADER);
+            if (header.getInt(4) != crc(header, data.array())) break;
+
+            ArticleView view = ArticleView.of(data.array());
+            int source = view.sourceId();
+            if (source >= sources.size()) break; // its name never reached sources.txt
+            float lat = header.getFloat(8);
+            float lon = header.getFloat(12);
+            long crawledAt = view.crawledMillis() == ArticleCodec.UNKNOWN_TIME ? p.start : view.crawledMillis();
+            long publishedAt = view.publishedMillis() == ArticleCodec.UNKNOWN_TIME ? crawledAt : view.publishedMillis();
+
+            if (!readOnly) {
+                ByteBuffer e = ByteBuffer.allocate(INDEX_ENTRY);
+                e.put(HEX.parseHex(view.id())).putLong(end).putInt(length).putLong(publishedAt).putInt(source)
+                        .putFloat(lat).putFloat(lon).flip();
+                writeFully(p.index, e, p.index.size());
+            }
+            int ordinal = p.add(end, length, publishedAt, source, lat, lon);
+            point(view.id(), p, ordinal);
+            end += RECORD_HEADER + length;
+        }
+
+        if (end < logSize && !readOnly) {
+            System.err.println(ARTICLE_STORE_PREFIX + "Dropping " + (logSize - end) + " torn bytes at the end of "
+                    + p.dir.resolve(LOG_FILE));
+            p.log.truncate(end);
+        }
+        p.logSize = end;
+    }
+
+    /** Reads one record with a positional read; null if its partition expired meanwhile. */
+    @Nullable
+    private Hit read(Partition p, int ordinal) throws IOException {
+        long offset;
+        int length;
+        float lat, lon;
+        p.lock.readLock().lock();
+        try {
+            offset = p.offsets[ordinal];
+            length = p.lengths[ordinal];
+            lat = p.lats[ordinal];
+            lon = p.lons[ordinal];
+        } finally {
+            p.lock.readLock().unlock();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        try {
+            readFully(p.log, buf, offset + RECORD_HEADER);
+        } catch (IOException e) {
+            if (!p.log.isOpen()) return null;
+            throw e;
+        }
+        return new Hit(ArticleView.of(buf.array()).toArticle(sources), lat, lon);
+    }
+
+    /**
+     * Adds the current records of a partition crawled in {@code [lo, hi)} to {@code out}, in append order. Reads
+     * through one mapping of the log and only decodes the strings of records inside the range.
+     */
+    private void scan(Partition p, long lo, long hi, List<Article> out) throws IOException {
+        long size;
+        BitSet superseded;
+        p.lock.readLock().lock();
+        try {
+            // records sit in the log in ordinal order, so the n-th record read is ordinal n
+            size = p.count == 0 ? 0 : p.offsets[p.count - 1] + RECORD_HEADER + p.lengths[p.count - 1];
+            superseded = (BitSet) p.superseded.clone();
+        } finally {
+            p.lock.readLock().unlock();
+        }
+        if (size == 0) return;
+        MappedByteBuffer log;
+        try {
+            log = p.log.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            if (!p.log.isOpen()) return; // expired meanwhile
+            throw e;
+        }
+        ArticleView view = new ArticleView();
+        int pos = 0;
+        for (int ordinal = 0; pos + RECORD_HEADER <= size; ordinal++) {
+            int length = log.getInt(pos); // crc was checked on load; location is in the index
+            if (!superseded.get(ordinal)) {
+                view.reset(log, pos + RECORD_HEADER);
+                long crawled = view.crawledMillis() == ArticleCodec.UNKNOWN_TIME ? p.start : view.crawledMillis();
+                if (crawled >= lo && crawled < hi) out.add(view.toArticle(sources));
+            }
+            pos += RECORD_HEADER + length;
+        }
+    }
+
+    private static ByteBuffer encodeRecord(byte[] data, float lat, float lon) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + data.length);
+        record.putInt(data.length).putInt(0).putFloat(lat).putFloat(lon).put(data);
+        record.putInt(4, crc(record, data));
+        return record.flip();
+    }
+
+    // covers the location and the article bytes
+    private static int crc(ByteBuffer header, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 8, RECORD_HEADER - 8);
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            for (Path f : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += ch.write(buf, position);
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) throw new IOException("Unexpected end of " + ch);
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an {@link ArticleCodec} record in place, from a heap or mapped buffer, without copying it first.
+ * <p>
+ * {@link #reset} only decodes the numeric header; each string is decoded when asked for, and the offsets of
+ * {@code url} and {@code body} are found by skipping over the preceding length-prefixed fields. Scanning timestamps
+ * and titles of many records therefore never materializes a body, and a deflated body is only inflated by
+ * {@link #body()}. A view is meant to be reused for record after
+ * record by one thread; the buffer is only read with absolute gets, so several views can share one buffer.
+ */
+public final class ArticleView {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private ByteBuffer buf;
+    private byte version;
+    private int idOffset;
+    private long published;
+    private long crawled;
+    private int sourceId;
+    private int titleOffset;
+    private int titleLength;
+    private int urlOffset = -1;
+    private int urlLength;
+    private int bodyOffset = -1;
+    private int bodyLength;
+    private int storedBodyLength;
+    private int pos; // cursor of readVarint
+
+    /** Convenience for a whole array holding one record. */
+    public static ArticleView of(byte[] record) {
+        return new ArticleView().reset(ByteBuffer.wrap(record), 0);
+    }
+
+    /** Points this view at the record starting at absolute index {@code offset} of {@code buf}. */
+    public ArticleView reset(ByteBuffer buf, int offset) {
+        byte version = buf.get(offset);
+        if (version != ArticleCodec.VERSION && version != ArticleCodec.VERSION_RAW_BODY) {
+            throw new IllegalArgumentException("Unknown article record version " + version + " at " + offset);
+        }
+        this.buf = buf;
+        this.version = version;
+        this.idOffset = offset + 1;
+        this.pos = idOffset + ArticleCodec.ID_BYTES;
+        this.published = ArticleCodec.unzigzag(readVarint());
+        long delta = ArticleCodec.unzigzag(readVarint());
+        this.crawled = published == ArticleCodec.UNKNOWN_TIME || delta == ArticleCodec.UNKNOWN_TIME
+                ? delta : published + delta;
+        this.sourceId = (int) readVarint();
+        this.titleLength = (int) readVarint();
+        this.titleOffset = pos;
+        this.urlOffset = -1;
+        this.bodyOffset = -1;
+        return this;
+    }
+
+    public String id() {
+        byte[] raw = new byte[ArticleCodec.ID_BYTES];
+        buf.get(idOffset, raw);
+        return HEX.formatHex(raw);
+    }
+
+    /** Publish time in epoch millis, or {@link ArticleCodec#UNKNOWN_TIME}. */
+    public long publishedMillis() {
+        return published;
+    }
+
+    /** Crawl time in epoch millis, or {@link ArticleCodec#UNKNOWN_TIME}. */
+    public long crawledMillis() {
+        return crawled;
+    }
+
+    public int sourceId() {
+        return sourceId;
+    }
+
+    public String title() {
+        return string(titleOffset, titleLength);
+    }
+
+    public String url() {
+        locateUrl();
+        return string(urlOffset, urlLength);
+    }
+
+    /** Length of the body in UTF-8 bytes, without inflating it. */
+    public int bodyLength() {
+        locateBody();
+        return bodyLength;
+    }
+
+    public String body() {
+        locateBody();
+        return storedBodyLength == bodyLength ? string(bodyOffset, bodyLength) : inflateBody();
+    }
+
+    /** Index just past the end of this record in its buffer. */
+    public int end() {
+        locateBody();
+        return bodyOffset + storedBodyLength;
+    }
+
+    public Article toArticle(SourceDictionary sources) {
+        return new Article(id(), url(), title(), body(), sources.name(sourceId),
+                ArticleCodec.formatTime(published), ArticleCodec.formatTime(crawled));
+    }
+
+    private void locateUrl() {
+        if (urlOffset >= 0) return;
+        pos = titleOffset + titleLength;
+        urlLength = (int) readVarint();
+        urlOffset = pos;
+    }
+
+    private void locateBody() {
+        if (bodyOffset >= 0) return;
+        locateUrl();
+        pos = urlOffset + urlLength;
+        bodyLength = (int) readVarint();
+        storedBodyLength = version == ArticleCodec.VERSION_RAW_BODY ? bodyLength : (int) readVarint();
+        bodyOffset = pos;
+    }
+
+    private String inflateBody() {
+        byte[] body = new byte[bodyLength];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(buf.slice(bodyOffset, storedBodyLength));
+            int n = 0;
+            while (n < body.length && !inflater.finished()) {
+                int k = inflater.inflate(body, n, body.length - n);
+                if (k == 0) break;
+                n += k;
+            }
+            if (n != body.length) throw new IllegalStateException("Truncated article body in record " + id());
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt article body in record " + id() + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private String string(int offset, int length) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarint() {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get(pos++);
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+}
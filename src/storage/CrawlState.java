@@ -0,0 +1,160 @@
+package storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static global.Constants.*;
+
+/**
+ * What earlier crawl runs know about each article, keyed by the article's sha256 id: when it was last fetched and
+ * the validators (ETag, Last-Modified) the server sent, so the next run can skip it or send a conditional GET.
+ * <p>
+ * The state lives in memory and is persisted as an append-only JSONL log, one line per update. Opening the log
+ * replays it (later lines win), drops entries older than {@link global.Constants#CRAWL_STATE_RETENTION} and
+ * rewrites the file if it has grown to more than twice the number of live entries.
+ */
+public final class CrawlState implements AutoCloseable {
+
+    public record Entry(String id, long fetchedAt, String etag, String lastModified) {
+
+        public Instant fetchedAtInstant() {
+            return Instant.ofEpochMilli(fetchedAt);
+        }
+
+        /** Same validators, fetched again at {@code now}. */
+        public Entry refreshed(Instant now) {
+            return new Entry(id, now.toEpochMilli(), etag, lastModified);
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter LINE_WRITER = MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock logLock = new ReentrantLock();
+    private final Writer log; // null for an in-memory state
+
+    private CrawlState(Writer log) {
+        this.log = log;
+    }
+
+    /** State that is forgotten when the JVM exits. */
+    public static CrawlState inMemory() {
+        return new CrawlState(null);
+    }
+
+    /** Loads the state stored at {@code file} (if any) and appends all further updates to it. */
+    public static CrawlState open(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+
+        Map<String, Entry> loaded = new ConcurrentHashMap<>();
+        long lines = 0;
+        if (Files.exists(file)) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    lines++;
+                    try {
+                        Entry e = MAPPER.readValue(line, Entry.class);
+                        loaded.put(e.id(), e);
+                    } catch (IOException e) {
+                        // a torn last line after a crash; everything before it is still good
+                        System.err.println(CRAWL_STATE_PREFIX + "Skipping unreadable line in " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        long cutoff = Instant.now().minus(CRAWL_STATE_RETENTION).toEpochMilli();
+        int before = loaded.size();
+        loaded.values().removeIf(e -> e.fetchedAt() < cutoff);
+        if (lines > 2L * loaded.size() || loaded.size() < before) {
+            compact(file, loaded);
+        }
+
+        CrawlState state = new CrawlState(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        state.entries.putAll(loaded);
+        System.out.println(CRAWL_STATE_PREFIX + "Loaded " + loaded.size() + " known articles from " + file);
+        return state;
+    }
+
+    public Entry get(String id) {
+        return entries.get(id);
+    }
+
+    /** True if the article was fetched less than {@code interval} ago. */
+    public boolean fetchedWithin(String id, Duration interval, Instant now) {
+        Entry e = entries.get(id);
+        return e != null && e.fetchedAtInstant().plus(interval).isAfter(now);
+    }
+
+    public void put(Entry entry) {
+        entries.put(entry.id(), entry);
+        if (log == null) return;
+
+        logLock.lock();
+        try {
+            log.write(LINE_WRITER.writeValueAsString(entry));
+            log.write('\n');
+        } catch (IOException e) {
+            System.err.println(CRAWL_STATE_PREFIX + "Could not persist state for " + entry.id() + ": " + e.getMessage());
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Flushes buffered updates to the log. */
+    public void flush() throws IOException {
+        if (log == null) return;
+        logLock.lock();
+        try {
+            log.flush();
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (log == null) return;
+        logLock.lock();
+        try {
+            log.close();
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    private static void compact(Path file, Map<String, Entry> live) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Entry e : live.values()) {
+                out.write(LINE_WRITER.writeValueAsString(e));
+                out.write('\n');
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
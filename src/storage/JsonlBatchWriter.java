@@ -0,0 +1,268 @@
+package storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static global.Constants.*;
+
+/**
+ * Thread-safe JSONL batch file with group commit.
+ * <p>
+ * {@link #append} only copies a line into an in-memory group buffer. A background committer swaps that buffer out
+ * every {@code commitInterval}, writes it with one call and optionally fsyncs it, so many articles share a single
+ * write and sync, and a crash loses at most one interval's worth of lines. An appender that fills the buffer past
+ * {@link global.Constants#BATCH_GROUP_COMMIT_BYTES} commits it itself rather than waiting for the timer.
+ * <p>
+ * Once a file exceeds {@code maxFileBytes} or has been open for {@code maxFileAge}, the next commit moves on to a
+ * new part: {@code name.jsonl}, {@code name_part1.jsonl}, {@code name_part2.jsonl} and so on. A line never spans
+ * two parts.
+ * <p>
+ * Lines are serialized apart from appending, so a pipeline can do the two on different threads: {@link #serialize}
+ * streams Jackson's output into a {@link Line} taken from a pool, and appending the line copies it into the group
+ * buffer and hands it back. In steady state no bytes are allocated per article.
+ * <p>
+ * If a commit fails, the bytes it could not write stay queued ahead of newer lines and are retried by the next
+ * commit. Until one succeeds, {@link #append} throws, so callers learn that their articles are not being saved
+ * instead of growing the buffer without bound.
+ */
+public final class JsonlBatchWriter implements AutoCloseable {
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /** ByteArrayOutputStream whose array can be written without copying it first. */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        /** Drops the first {@code n} bytes, keeping the rest at the front. */
+        void discard(int n) {
+            System.arraycopy(buf, n, buf, 0, count - n);
+            count -= n;
+        }
+    }
+
+    /** One serialized article, in a buffer that goes back to the writer's pool once the line is appended. */
+    public static final class Line {
+        private final Buffer json = new Buffer(4096);
+
+        private Line() {}
+    }
+
+    // lines appended and ready for reuse; never more than were serialized and not yet appended at one time
+    private final ConcurrentLinkedQueue<Line> freeLines = new ConcurrentLinkedQueue<>();
+
+    private final Path dir;
+    private final String stem;
+    private final String extension;
+    private final long maxFileBytes;
+    private final long maxFileAgeNanos;
+    private final boolean fsync;
+
+    // guards pending; held only for the copy of one line, never across I/O
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private Buffer pending = new Buffer(64 * 1024);
+    private boolean closed;
+
+    // guards the channel, spare and rotation; one commit at a time keeps lines in append order
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private Buffer spare = new Buffer(64 * 1024); // empty between commits unless the last one failed
+    private FileChannel channel;
+    private Path current;
+    private int part;
+    private long fileBytes;
+    private long fileOpenedAt;
+    private boolean midLine;
+
+    private final ScheduledExecutorService committer;
+    private volatile IOException failure;
+
+    public JsonlBatchWriter(Path file, long maxFileBytes, Duration maxFileAge, Duration commitInterval, boolean fsync)
+            throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.dir = file.toAbsolutePath().getParent();
+        this.stem = dot < 0 ? name : name.substring(0, dot);
+        this.extension = dot < 0 ? "" : name.substring(dot);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeNanos = maxFileAge.toNanos();
+        this.fsync = fsync;
+
+        Files.createDirectories(dir);
+        open(file);
+
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "JsonlCommitter-" + stem);
+            t.setDaemon(true);
+            return t;
+        });
+        long ms = Math.max(1, commitInterval.toMillis());
+        committer.scheduleWithFixedDelay(this::commitQuietly, ms, ms, TimeUnit.MILLISECONDS);
+    }
+
+    /** Writer with the rotation and commit settings from {@link global.Constants}. */
+    public JsonlBatchWriter(Path file) throws IOException {
+        this(file, BATCH_MAX_FILE_BYTES, BATCH_MAX_FILE_AGE, BATCH_COMMIT_INTERVAL, BATCH_FSYNC);
+    }
+
+    /** Streams {@code article} as single-line JSON into a pooled buffer, to be passed to {@link #append(Line)}. */
+    public Line serialize(Article article) throws IOException {
+        Line line = freeLines.poll();
+        if (line == null) line = new Line();
+        line.json.reset();
+        Article.JSONL_WRITER.writeValue(line.json, article);
+        return line;
+    }
+
+    /** Appends a line from {@link #serialize} and takes its buffer back; the line must not be used afterwards. */
+    public void append(Line line) throws IOException {
+        try {
+            append(line.json.array(), 0, line.json.size());
+        } finally {
+            freeLines.offer(line);
+        }
+    }
+
+    /** Appends an already serialized JSON object (without line separator) as one line. */
+    public void append(byte[] json) throws IOException {
+        append(json, 0, json.length);
+    }
+
+    private void append(byte[] json, int off, int len) throws IOException {
+        IOException f = failure;
+        if (f != null) throw new IOException("Batch writer is failing to commit to " + current, f);
+
+        boolean full;
+        appendLock.lock();
+        try {
+            if (closed) throw new IOException("Batch writer is closed: " + current);
+            pending.write(json, off, len);
+            pending.write(NEWLINE, 0, NEWLINE.length);
+            full = pending.size() >= BATCH_GROUP_COMMIT_BYTES;
+        } finally {
+            appendLock.unlock();
+        }
+        if (full) commit();
+    }
+
+    /** Writes (and, if configured, fsyncs) everything appended so far. */
+    public void flush() throws IOException {
+        commit();
+    }
+
+    /** The part currently being written. */
+    public Path currentFile() {
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+        committer.shutdownNow();
+        commitLock.lock();
+        try {
+            commit();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException e) {
+            System.err.println("Could not commit batch file " + current + ", will retry: " + e.getMessage());
+        }
+    }
+
+    private void commit() throws IOException {
+        commitLock.lock();
+        try {
+            appendLock.lock();
+            try {
+                if (spare.size() == 0) {
+                    Buffer full = pending;
+                    pending = spare;
+                    spare = full;
+                } else {
+                    // bytes left over by a failed commit go first, so newer lines are copied in behind them
+                    spare.write(pending.array(), 0, pending.size());
+                    pending.reset();
+                }
+            } finally {
+                appendLock.unlock();
+            }
+
+            int n = spare.size();
+            if (n == 0) return;
+            ByteBuffer bb = ByteBuffer.wrap(spare.array(), 0, n);
+            try {
+                boolean due = fileBytes > 0
+                        && (fileBytes + n > maxFileBytes || System.nanoTime() - fileOpenedAt > maxFileAgeNanos);
+                // the rest of a line cut short by a failed write must land in the same part
+                if (!channel.isOpen() || due && !midLine) {
+                    rotate();
+                }
+                while (bb.hasRemaining()) {
+                    channel.write(bb);
+                }
+                if (fsync) channel.force(false);
+                failure = null;
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                // whatever reached the file is done; the rest is retried by the next commit
+                int written = bb.position();
+                if (written > 0) midLine = spare.array()[written - 1] != '\n';
+                fileBytes += written;
+                spare.discard(written);
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        Path next;
+        do {
+            next = dir.resolve(stem + "_part" + (++part) + extension);
+        } while (Files.exists(next));
+        open(next);
+    }
+
+    private void open(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.current = file;
+        this.fileBytes = channel.size();
+        this.fileOpenedAt = System.nanoTime();
+    }
+}
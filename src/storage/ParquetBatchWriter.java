@@ -0,0 +1,486 @@
+package storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static global.Constants.*;
+
+/**
+ * Writes {@link Article}s as a Parquet file without parquet-mr or Hadoop: the pages and the Thrift footer are
+ * encoded here directly.
+ * <p>
+ * Every article field becomes a required UTF-8 column named like its JSON key, so the file reads back as the same
+ * records as a JSONL batch (a null field is stored as the empty string). {@code source} has a handful of distinct
+ * values and is dictionary-encoded; all pages are GZIP-compressed, which is where the large {@code body} column
+ * shrinks most. Rows are buffered and written as a row group every
+ * {@link global.Constants#PARQUET_ROW_GROUP_ROWS} rows or {@link global.Constants#PARQUET_ROW_GROUP_BYTES} bytes,
+ * so a reader such as the embeddings service can process one group at a time and project away the columns it does
+ * not need.
+ * <p>
+ * The footer is only written on {@link #close()}, so a file is not readable while it is being written. Like
+ * {@link JsonlBatchWriter}, the writer finishes a file and continues in {@code name_partN.parquet} once it exceeds
+ * {@link global.Constants#BATCH_MAX_FILE_BYTES} or {@link global.Constants#BATCH_MAX_FILE_AGE}, so a long-running
+ * crawl produces readable files as it goes. Age is checked on every append and on {@link #flush()}, so it applies
+ * even when a row group takes longer than that to fill.
+ */
+public final class ParquetBatchWriter implements AutoCloseable {
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    // parquet.thrift enum values
+    private static final int TYPE_BYTE_ARRAY = 6;
+    private static final int REPETITION_REQUIRED = 0;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int ENCODING_RLE_DICTIONARY = 8;
+    private static final int CODEC_GZIP = 2;
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+
+    private record Column(String name, Function<Article, String> value, boolean dictionary) {}
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("id", Article::id, false),
+            new Column("url", Article::url, false),
+            new Column("title", Article::title, false),
+            new Column("body", Article::body, false),
+            new Column("source", Article::source, true),
+            new Column("publishTime", Article::publishTime, false),
+            new Column("crawledAt", Article::crawledAt, false));
+
+    /** Footer metadata of one written column chunk. */
+    private record ChunkMeta(Column column, long numValues, long uncompressedSize, long compressedSize,
+                             long dataPageOffset, long dictionaryPageOffset) {}
+
+    private record RowGroupMeta(List<ChunkMeta> chunks, long numRows, long fileOffset) {}
+
+    private final Path dir;
+    private final String stem;
+    private final String extension;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final List<Article> rows = new ArrayList<>();
+    private long rowBytes;
+
+    private FileChannel channel;
+    private Path current;
+    private int part;
+    private long position;
+    private long openedAt;
+    private long fileRows;
+    private final List<RowGroupMeta> rowGroups = new ArrayList<>();
+    private boolean closed;
+
+    public ParquetBatchWriter(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.dir = file.toAbsolutePath().getParent();
+        this.stem = dot < 0 ? name : name.substring(0, dot);
+        this.extension = dot < 0 ? "" : name.substring(dot);
+        Files.createDirectories(dir);
+        open(file);
+    }
+
+    public void append(Article article) throws IOException {
+        lock.lock();
+        try {
+            if (closed) throw new IOException("Parquet writer is closed: " + current);
+            rows.add(article);
+            for (Column c : COLUMNS) {
+                String v = c.value().apply(article);
+                rowBytes += v == null ? 0 : v.length();
+            }
+            if (isTooOld()) {
+                // a slow source may take hours to fill a row group, so age is checked on every row
+                rotate();
+            } else if (rows.size() >= PARQUET_ROW_GROUP_ROWS || rowBytes >= PARQUET_ROW_GROUP_BYTES) {
+                writeRowGroup();
+                if (position > BATCH_MAX_FILE_BYTES) rotate();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finishes the current file if it has rows and is older than {@link global.Constants#BATCH_MAX_FILE_AGE}, so a
+     * source that goes quiet still has its last articles readable within that time. A younger file is left alone:
+     * its rows only become readable with the footer, and writing them early would just shrink row groups.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            if (!closed && isTooOld()) rotate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The part currently being written. */
+    public Path currentFile() {
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            writeRowGroup();
+            finishFile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //===========================================
+    // Pages and row groups
+    //===========================================
+
+    private void writeRowGroup() throws IOException {
+        if (rows.isEmpty()) return;
+        long start = position;
+        List<ChunkMeta> chunks = new ArrayList<>(COLUMNS.size());
+        for (Column c : COLUMNS) {
+            chunks.add(c.dictionary() ? writeDictionaryChunk(c) : writePlainChunk(c));
+        }
+        rowGroups.add(new RowGroupMeta(chunks, rows.size(), start));
+        fileRows += rows.size();
+        rows.clear();
+        rowBytes = 0;
+    }
+
+    private ChunkMeta writePlainChunk(Column c) throws IOException {
+        ByteArrayOutputStream values = new ByteArrayOutputStream();
+        for (Article a : rows) {
+            writePlain(values, c.value().apply(a));
+        }
+        long offset = position;
+        long[] sizes = writePage(PAGE_DATA, values.toByteArray(), dataPageHeader(rows.size(), ENCODING_PLAIN));
+        return new ChunkMeta(c, rows.size(), sizes[0], sizes[1], offset, -1);
+    }
+
+    private ChunkMeta writeDictionaryChunk(Column c) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        ByteArrayOutputStream dict = new ByteArrayOutputStream();
+        int[] indices = new int[rows.size()];
+        for (int i = 0; i < indices.length; i++) {
+            String v = c.value().apply(rows.get(i));
+            String key = v == null ? "" : v;
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = ids.size();
+                ids.put(key, id);
+                writePlain(dict, key);
+            }
+            indices[i] = id;
+        }
+
+        long dictOffset = position;
+        int dictSize = ids.size();
+        long[] dictSizes = writePage(PAGE_DICTIONARY, dict.toByteArray(), t -> {
+            t.struct(7);                        // dictionary_page_header
+            t.i32(1, dictSize);                 // num_values
+            t.i32(2, ENCODING_PLAIN);           // encoding
+            t.structEnd();
+        });
+
+        // bit width, then the indices as RLE runs of the RLE/bit-packing hybrid
+        int bitWidth = Math.max(1, 32 - Integer.numberOfLeadingZeros(dictSize - 1));
+        int valueBytes = (bitWidth + 7) / 8;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(bitWidth);
+        for (int i = 0; i < indices.length; ) {
+            int run = 1;
+            while (i + run < indices.length && indices[i + run] == indices[i]) run++;
+            writeVarint(data, (long) run << 1);
+            for (int b = 0; b < valueBytes; b++) data.write(indices[i] >>> (8 * b));
+            i += run;
+        }
+
+        long dataOffset = position;
+        long[] dataSizes = writePage(PAGE_DATA, data.toByteArray(), dataPageHeader(rows.size(), ENCODING_RLE_DICTIONARY));
+        return new ChunkMeta(c, rows.size(), dictSizes[0] + dataSizes[0], dictSizes[1] + dataSizes[1],
+                dataOffset, dictOffset);
+    }
+
+    private static HeaderFields dataPageHeader(int numValues, int encoding) {
+        return t -> {
+            t.struct(5);                        // data_page_header
+            t.i32(1, numValues);                // num_values
+            t.i32(2, encoding);                 // encoding
+            t.i32(3, ENCODING_RLE);             // definition_level_encoding
+            t.i32(4, ENCODING_RLE);             // repetition_level_encoding
+            t.structEnd();
+        };
+    }
+
+    /** Compresses and writes one page; returns {uncompressed, compressed} size including the header. */
+    private long[] writePage(int type, byte[] page, HeaderFields fields) throws IOException {
+        byte[] compressed = gzip(page);
+        Thrift t = new Thrift();
+        t.structBegin();
+        t.i32(1, type);                         // type
+        t.i32(2, page.length);                  // uncompressed_page_size
+        t.i32(3, compressed.length);            // compressed_page_size
+        fields.write(t);
+        t.structEnd();
+        byte[] header = t.toByteArray();
+        write(header);
+        write(compressed);
+        return new long[]{header.length + page.length, header.length + compressed.length};
+    }
+
+    @FunctionalInterface
+    private interface HeaderFields {
+        void write(Thrift t);
+    }
+
+    //===========================================
+    // Footer and files
+    //===========================================
+
+    private void finishFile() throws IOException {
+        Thrift t = new Thrift();
+        t.structBegin();
+        t.i32(1, 1);                            // version
+
+        t.list(2, Thrift.STRUCT, COLUMNS.size() + 1);   // schema
+        t.structBegin();
+        t.binary(4, "schema");
+        t.i32(5, COLUMNS.size());               // num_children
+        t.structEnd();
+        for (Column c : COLUMNS) {
+            t.structBegin();
+            t.i32(1, TYPE_BYTE_ARRAY);
+            t.i32(3, REPETITION_REQUIRED);
+            t.binary(4, c.name());
+            t.i32(6, CONVERTED_UTF8);
+            t.structEnd();
+        }
+
+        t.i64(3, fileRows);                     // num_rows
+        t.list(4, Thrift.STRUCT, rowGroups.size());
+        for (RowGroupMeta rg : rowGroups) {
+            long uncompressed = 0, compressed = 0;
+            t.structBegin();
+            t.list(1, Thrift.STRUCT, rg.chunks().size());
+            for (ChunkMeta m : rg.chunks()) {
+                uncompressed += m.uncompressedSize();
+                compressed += m.compressedSize();
+                long chunkStart = m.dictionaryPageOffset() >= 0 ? m.dictionaryPageOffset() : m.dataPageOffset();
+                t.structBegin();
+                t.i64(2, chunkStart);           // file_offset
+                t.struct(3);                    // meta_data
+                t.i32(1, TYPE_BYTE_ARRAY);
+                if (m.column().dictionary()) {
+                    t.list(2, Thrift.I32, 3);
+                    t.i32Element(ENCODING_PLAIN);
+                    t.i32Element(ENCODING_RLE);
+                    t.i32Element(ENCODING_RLE_DICTIONARY);
+                } else {
+                    t.list(2, Thrift.I32, 2);
+                    t.i32Element(ENCODING_PLAIN);
+                    t.i32Element(ENCODING_RLE);
+                }
+                t.list(3, Thrift.BINARY, 1);    // path_in_schema
+                t.binaryElement(m.column().name());
+                t.i32(4, CODEC_GZIP);
+                t.i64(5, m.numValues());
+                t.i64(6, m.uncompressedSize());
+                t.i64(7, m.compressedSize());
+                t.i64(9, m.dataPageOffset());
+                if (m.dictionaryPageOffset() >= 0) t.i64(11, m.dictionaryPageOffset());
+                t.structEnd();
+                t.structEnd();
+            }
+            t.i64(2, uncompressed);             // total_byte_size
+            t.i64(3, rg.numRows());             // num_rows
+            t.i64(5, rg.fileOffset());          // file_offset
+            t.i64(6, compressed);               // total_compressed_size
+            t.structEnd();
+        }
+        t.binary(6, "NewsMap crawler");         // created_by
+        t.structEnd();
+
+        byte[] footer = t.toByteArray();
+        write(footer);
+        write(new byte[]{(byte) footer.length, (byte) (footer.length >>> 8),
+                (byte) (footer.length >>> 16), (byte) (footer.length >>> 24)});
+        write(MAGIC);
+        channel.force(false);
+        channel.close();
+    }
+
+    private boolean isTooOld() {
+        return (fileRows > 0 || !rows.isEmpty()) && System.nanoTime() - openedAt > BATCH_MAX_FILE_AGE.toNanos();
+    }
+
+    /** Writes the buffered rows, finishes the file and continues in the next part. */
+    private void rotate() throws IOException {
+        writeRowGroup();
+        finishFile();
+        openNextPart();
+    }
+
+    private void openNextPart() throws IOException {
+        Path next;
+        do {
+            next = dir.resolve(stem + "_part" + (++part) + extension);
+        } while (Files.exists(next));
+        open(next);
+    }
+
+    private void open(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.current = file;
+        this.position = 0;
+        this.openedAt = System.nanoTime();
+        this.fileRows = 0;
+        this.rowGroups.clear();
+        write(MAGIC);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        position += bytes.length;
+    }
+
+    //===========================================
+    // Encoding helpers
+    //===========================================
+
+    // PLAIN BYTE_ARRAY: 4-byte little-endian length, then the bytes
+    private static void writePlain(ByteArrayOutputStream out, String value) {
+        byte[] b = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        int n = b.length;
+        out.write(n);
+        out.write(n >>> 8);
+        out.write(n >>> 16);
+        out.write(n >>> 24);
+        out.write(b, 0, n);
+    }
+
+    private static void writeVarint(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /** The subset of Thrift's compact protocol the Parquet page headers and footer need. */
+    private static final class Thrift {
+        static final int I32 = 5;
+        static final int I64 = 6;
+        static final int BINARY = 8;
+        static final int LIST = 9;
+        static final int STRUCT = 12;
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int[] lastIds = new int[16];
+        private int depth;
+        private int lastId;
+
+        void structBegin() {
+            lastIds[depth++] = lastId;
+            lastId = 0;
+        }
+
+        void structEnd() {
+            out.write(0);
+            lastId = lastIds[--depth];
+        }
+
+        void struct(int id) {
+            field(id, STRUCT);
+            structBegin();
+        }
+
+        void i32(int id, int v) {
+            field(id, I32);
+            i32Element(v);
+        }
+
+        void i64(int id, long v) {
+            field(id, I64);
+            varint((v << 1) ^ (v >> 63));
+        }
+
+        void binary(int id, String s) {
+            field(id, BINARY);
+            binaryElement(s);
+        }
+
+        void list(int id, int elementType, int size) {
+            field(id, LIST);
+            if (size < 15) {
+                out.write(size << 4 | elementType);
+            } else {
+                out.write(0xF0 | elementType);
+                varint(size);
+            }
+        }
+
+        void i32Element(int v) {
+            varint(((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+        }
+
+        void binaryElement(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(b.length);
+            out.write(b, 0, b.length);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void field(int id, int type) {
+            int delta = id - lastId;
+            if (delta > 0 && delta <= 15) {
+                out.write(delta << 4 | type);
+            } else {
+                out.write(type);
+                varint(((id << 1) ^ (id >> 31)) & 0xFFFFFFFFL);
+            }
+            lastId = id;
+        }
+
+        private void varint(long v) {
+            try {
+                writeVarint(out, v);
+            } catch (IOException e) {
+                throw new AssertionError(e); // ByteArrayOutputStream does not throw
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Numbers article sources (hosts) densely from 0, so records and indexes can store a small int instead of the name.
+ * Ids never change once handed out; a file-backed dictionary appends each new name as a line and persists it before
+ * {@link #id} returns, so no stored id can outlive its name.
+ */
+public final class SourceDictionary {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> names = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Path file; // null for an in-memory dictionary
+
+    private SourceDictionary(Path file) {
+        this.file = file;
+    }
+
+    public static SourceDictionary inMemory() {
+        return new SourceDictionary(null);
+    }
+
+    /** Loads the names stored at {@code file} (if any) and appends new ones to it. */
+    public static SourceDictionary open(Path file) throws IOException {
+        SourceDictionary dict = new SourceDictionary(file);
+        if (Files.exists(file)) {
+            for (String name : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                dict.ids.putIfAbsent(name, dict.names.size());
+                dict.names.add(name);
+            }
+        }
+        return dict;
+    }
+
+    /** The id of {@code name}, assigning (and persisting) a new one if needed. A null name counts as "". */
+    public int id(String name) throws IOException {
+        String key = name == null ? "" : name;
+        Integer id = ids.get(key);
+        if (id != null) return id;
+
+        lock.lock();
+        try {
+            id = ids.get(key);
+            if (id != null) return id;
+            if (file != null) {
+                Files.writeString(file, key + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            id = names.size();
+            names.add(key);
+            ids.put(key, id);
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The id of {@code name}, or -1 if it was never assigned. */
+    public int find(String name) {
+        return ids.getOrDefault(name == null ? "" : name, -1);
+    }
+
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,248 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static global.Constants.EMBEDDING_PREFIX;
+
+/**
+ * Append-only store of article embeddings as two fixed-width columns in a directory:
+ * <pre>
+ *   ids.bin      32-byte raw sha256 article id per row
+ *   vectors.f32  16-byte header (int magic, int version, int dimension, int 0), then one row of
+ *                {@code dimension} little-endian float32 per article
+ * </pre>
+ * Row {@code i} of both files belongs to the same article, so either column can be memory-mapped and read without
+ * the other: {@code numpy.memmap("vectors.f32", "<f4", offset=16).reshape(-1, dimension)} is the whole matrix.
+ * Vectors are written before their ids, and opening the store cuts both files back to the rows complete in each,
+ * so a crash mid-append loses at most that batch. An article embedded again, because it changed since it was
+ * fetched, gets a new row and its id then means the latest one; a reader of the raw columns takes the last row of
+ * each id.
+ * <p>
+ * One thread appends; {@link #contains}, {@link #vector} and {@link #mapVectors} may be called from any thread and
+ * see every row appended before they were called.
+ */
+public final class VectorStore implements AutoCloseable {
+
+    private static final String IDS_FILE = "ids.bin";
+    private static final String VECTORS_FILE = "vectors.f32";
+    private static final int MAGIC = 0x56454331; // "VEC1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int ID_BYTES = 32;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path dir;
+    private final int dimension;
+    private final FileChannel ids;
+    private final FileChannel vectors;
+    private final Map<String, Integer> rows = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile int size;
+
+    private VectorStore(Path dir, int dimension, FileChannel ids, FileChannel vectors) {
+        this.dir = dir;
+        this.dimension = dimension;
+        this.ids = ids;
+        this.vectors = vectors;
+    }
+
+    /**
+     * Opens the store in {@code dir}, creating it if needed. An existing store must hold vectors of
+     * {@code dimension}; vectors of another model cannot share the matrix.
+     */
+    public static VectorStore open(Path dir, int dimension) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel ids = FileChannel.open(dir.resolve(IDS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel vectors = FileChannel.open(dir.resolve(VECTORS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (vectors.size() < HEADER_BYTES) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(0).flip();
+                writeFully(vectors, header, 0);
+                ids.truncate(0);
+            } else {
+                readFully(vectors, header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not a vector file: " + dir.resolve(VECTORS_FILE));
+                }
+                int stored = header.getInt();
+                if (stored != dimension) {
+                    throw new IOException("Vectors in " + dir + " have dimension " + stored + ", not " + dimension);
+                }
+            }
+
+            VectorStore store = new VectorStore(dir, dimension, ids, vectors);
+            store.load();
+            System.out.println(EMBEDDING_PREFIX + "Opened " + dir + ": " + store.rows.size() + " articles in "
+                    + store.size + " rows of dimension " + dimension);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            ids.close();
+            vectors.close();
+            throw e;
+        }
+    }
+
+    private void load() throws IOException {
+        long rowBytes = (long) dimension * Float.BYTES;
+        long idRows = ids.size() / ID_BYTES;
+        long vectorRows = (vectors.size() - HEADER_BYTES) / rowBytes;
+        int n = (int) Math.min(idRows, vectorRows);
+        if (ids.size() != (long) n * ID_BYTES || vectors.size() != HEADER_BYTES + n * rowBytes) {
+            System.err.println(EMBEDDING_PREFIX + "Cutting " + dir + " back to the " + n + " complete rows");
+            ids.truncate((long) n * ID_BYTES);
+            vectors.truncate(HEADER_BYTES + n * rowBytes);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(ID_BYTES * 4096);
+        byte[] raw = new byte[ID_BYTES];
+        for (int row = 0; row < n; ) {
+            buf.clear().limit(Math.min(buf.capacity(), (n - row) * ID_BYTES));
+            readFully(ids, buf, (long) row * ID_BYTES);
+            buf.flip();
+            while (buf.hasRemaining()) {
+                buf.get(raw);
+                rows.put(HEX.formatHex(raw), row++);
+            }
+        }
+        size = n;
+    }
+
+    /**
+     * Appends one row per id and points each id at its new row, so a re-embedded article's old vector is no longer
+     * returned. Within a batch the last vector of a repeated id wins. Returns the number of rows added.
+     */
+    public int append(String[] articleIds, float[][] embeddings) throws IOException {
+        if (articleIds.length != embeddings.length) {
+            throw new IllegalArgumentException(articleIds.length + " ids for " + embeddings.length + " vectors");
+        }
+        appendLock.lock();
+        try {
+            int n = 0;
+            boolean[] keep = new boolean[articleIds.length];
+            for (int i = 0; i < articleIds.length; i++) {
+                if (embeddings[i].length != dimension) {
+                    throw new IllegalArgumentException("Vector of dimension " + embeddings[i].length + ", expected "
+                            + dimension);
+                }
+                keep[i] = lastIndexOf(articleIds, articleIds[i]) == i;
+                if (keep[i]) n++;
+            }
+            if (n == 0) return 0;
+
+            ByteBuffer vecBuf = ByteBuffer.allocate(n * dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer idBuf = ByteBuffer.allocate(n * ID_BYTES);
+            for (int i = 0; i < articleIds.length; i++) {
+                if (!keep[i]) continue;
+                vecBuf.asFloatBuffer().put(embeddings[i]);
+                vecBuf.position(vecBuf.position() + dimension * Float.BYTES);
+                idBuf.put(HEX.parseHex(articleIds[i]));
+            }
+            int first = size;
+            writeFully(vectors, vecBuf.flip(), HEADER_BYTES + (long) first * dimension * Float.BYTES);
+            writeFully(ids, idBuf.flip(), (long) first * ID_BYTES);
+
+            int row = first;
+            for (int i = 0; i < articleIds.length; i++) {
+                if (keep[i]) rows.put(articleIds[i], row++);
+            }
+            size = row;
+            return n;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public boolean contains(String articleId) {
+        return rows.containsKey(articleId);
+    }
+
+    /** The stored vector of an article, or null if it has none. */
+    public float[] vector(String articleId) throws IOException {
+        Integer row = rows.get(articleId);
+        if (row == null) return null;
+        ByteBuffer buf = ByteBuffer.allocate(dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(vectors, buf, HEADER_BYTES + (long) row * dimension * Float.BYTES);
+        float[] v = new float[dimension];
+        buf.flip().asFloatBuffer().get(v);
+        return v;
+    }
+
+    /**
+     * Maps the rows stored so far read-only; row {@code i} starts at float index {@code i * dimension()}. The
+     * mapping does not grow with later appends.
+     */
+    public FloatBuffer mapVectors() throws IOException {
+        long rowBytes = (long) dimension * Float.BYTES;
+        return vectors.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size * rowBytes)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /** Number of stored rows, including the ones of re-embedded articles that a newer row replaced. */
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /** Forces appended rows to disk. */
+    public void flush() throws IOException {
+        appendLock.lock();
+        try {
+            vectors.force(false);
+            ids.force(false);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            vectors.force(false);
+            ids.force(false);
+        } finally {
+            appendLock.unlock();
+            vectors.close();
+            ids.close();
+        }
+    }
+
+    private static int lastIndexOf(String[] values, String value) {
+        for (int i = values.length - 1; i >= 0; i--) {
+            if (values[i].equals(value)) return i;
+        }
+        return -1;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += ch.write(buf, position);
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) throw new IOException("Unexpected end of vector file");
+            position += n;
+        }
+    }
+}
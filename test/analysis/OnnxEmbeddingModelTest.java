@@ -0,0 +1,72 @@
+package analysis;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static global.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the model installed in {@link global.Constants#EMBEDDING_MODEL_DIR}, which must be an all-MiniLM-L6-v2
+ * export, against reference outputs: the token ids of the Hugging Face tokenizer and the similarities the
+ * sentence-transformers quickstart prints for its three example sentences. Skipped when no model is installed.
+ */
+class OnnxEmbeddingModelTest {
+
+    private static OnnxEmbeddingModel model;
+
+    @BeforeAll
+    static void load() throws IOException {
+        Path dir = Path.of(EMBEDDING_MODEL_DIR);
+        assumeTrue(Files.isDirectory(dir), "no embedding model installed");
+        model = OnnxEmbeddingModel.load(dir, EMBEDDING_MAX_TOKENS, 1);
+    }
+
+    @AfterAll
+    static void close() throws IOException {
+        if (model != null) model.close();
+    }
+
+    @Test
+    void tokenizerMatchesHuggingFace() throws IOException {
+        WordPieceTokenizer tokenizer = WordPieceTokenizer.load(Path.of(EMBEDDING_MODEL_DIR, "vocab.txt"));
+        assertArrayEquals(new int[]{101, 1996, 4633, 2003, 8403, 2651, 1012, 102},
+                tokenizer.encode("The weather is lovely today.", EMBEDDING_MAX_TOKENS));
+        assertArrayEquals(new int[]{101, 7668, 15743, 13746, 1517, 10204, 1010, 7509, 9094, 1024, 1017, 1012, 1019,
+                        1003, 3930, 999, 102},
+                tokenizer.encode("Café naïve résumé — Zürich, São Paulo: 3.5% growth!", EMBEDDING_MAX_TOKENS));
+        assertArrayEquals(new int[]{101, 1879, 1755, 1665, 1802, 100, 7861, 29147, 2072, 100, 102},
+                tokenizer.encode("東京で地震 emoji 😀", EMBEDDING_MAX_TOKENS));
+    }
+
+    @Test
+    void similaritiesMatchSentenceTransformers() throws Exception {
+        float[][] v = model.embed(List.of("The weather is lovely today.", "It's so sunny outside!",
+                "He drove to the stadium."));
+        assertEquals(384, model.dimension());
+        assertEquals(1, dot(v[0], v[0]), 1e-5);
+        assertEquals(0.6660, dot(v[0], v[1]), 5e-4);
+        assertEquals(0.1046, dot(v[0], v[2]), 5e-4);
+        assertEquals(0.1411, dot(v[1], v[2]), 5e-4);
+    }
+
+    @Test
+    void paddingDoesNotChangeVectors() throws Exception {
+        float[] alone = model.embed(List.of("Short text."))[0];
+        float[] padded = model.embed(List.of("Short text.", "A much longer text that pads the first one in the batch."))[0];
+        assertArrayEquals(alone, padded, 1e-5f);
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
@@ -0,0 +1,169 @@
+package crawler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.junit.jupiter.api.Test;
+import storage.Article;
+import storage.SiteConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static global.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that {@link ArticleExtractor#fromStream} gives what {@link ArticleExtractor#fromDocument} gives, on
+ * hand-written pages with nested and overlapping matches and on the pages saved by {@code ArticlePageSampler}.
+ */
+class ArticleExtractorTest {
+
+    private static final String URL = "https://news.example.com/a";
+
+    @Test
+    void nestedBodyMatchesFollowTheirAncestor() throws IOException {
+        SiteConfig config = config("h1", "time[datetime]", "div.block");
+        String html = "<h1>Title</h1><div class='block'><p>A</p><div class='block'><p>B</p></div><p>C</p></div>"
+                + "<div class='block'>D</div>";
+
+        Article stream = assertSameAsDom(config, html);
+        assertEquals("A B C B D", stream.body());
+    }
+
+    @Test
+    void elementMatchingTitleAndBodyGoesToBoth() throws IOException {
+        SiteConfig config = config("h1", "time[datetime]", "h1, p");
+        String html = "<h1>Title</h1><p>First</p><p>Second</p>";
+
+        Article stream = assertSameAsDom(config, html);
+        assertEquals("Title", stream.title());
+        assertEquals("Title First Second", stream.body());
+    }
+
+    @Test
+    void timeIsTheFirstMatchInDocumentOrder() throws IOException {
+        SiteConfig config = config("h1", "[datetime]", "p");
+        String html = "<h1>Title</h1><div datetime='2024-01-02T03:04:05Z'><time datetime='2025-11-14T10:00:00Z'>"
+                + "</time></div><p>Body</p><time datetime='2023-05-06T07:08:09Z'></time>";
+
+        Article stream = assertSameAsDom(config, html);
+        assertTrue(stream.publishTime().startsWith("2024-01-02"), stream.publishTime());
+    }
+
+    @Test
+    void emptyMatchesAreJoinedLikeElementsText() throws IOException {
+        SiteConfig config = config("h1", "time[datetime]", "p");
+        assertSameAsDom(config, "<h1>Title</h1><p></p><p>b</p><p> </p><p>c</p>");
+    }
+
+    @Test
+    void ignoredAndUnprunableContentMatchesDom() throws IOException {
+        String html = "<h1>Title</h1><h2>Lead</h2><p>One<noscript>N</noscript><script>S</script></p>"
+                + "<p>Two<svg><text>T</text></svg><iframe>I</iframe></p>";
+        assertSameAsDom(config("h1", "time[datetime]", "p"), html);
+        assertSameAsDom(config("h1", "time[datetime]", "h2 + p"), html);
+    }
+
+    @Test
+    void bundledConfigsMatchDomOnNestedMarkup() throws IOException {
+        for (SiteConfig config : bundledConfigs().values()) {
+            // every selector's matches nested inside copies of themselves and of each other
+            String title = sample(config.articleTitle(), "Title"), time = sample(config.articleTime(), "");
+            String body = sample(config.articleBody(), "Para");
+            String html = wrap(config.articleBody(), body + wrap(config.articleBody(), body + time) + title)
+                    + wrap(config.articleTime(), time) + title + body;
+            assertSameAsDom(config, html);
+        }
+    }
+
+    @Test
+    void samplerPagesMatchDom() throws IOException {
+        Path pages = Path.of("data/pages");
+        assumeTrue(Files.isDirectory(pages), "no pages saved by ArticlePageSampler");
+
+        Map<String, SiteConfig> configs = bundledConfigs();
+        try (Stream<Path> hosts = Files.list(pages)) {
+            for (Path dir : hosts.filter(Files::isDirectory).toList()) {
+                SiteConfig config = configs.get(dir.getFileName().toString());
+                if (config == null) continue;
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : files.sorted().toList()) {
+                        String content = Files.readString(file, StandardCharsets.UTF_8);
+                        int nl = content.indexOf('\n');
+                        assertSameAsDom(config, content.substring(0, nl), content.substring(nl + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Article assertSameAsDom(SiteConfig config, String html) throws IOException {
+        return assertSameAsDom(config, URL, html);
+    }
+
+    private static Article assertSameAsDom(SiteConfig config, String url, String html) throws IOException {
+        ArticleExtractor extractor = new ArticleExtractor(config, "news.example.com");
+        Article dom = extractor.fromDocument(Jsoup.parse(html, url), url);
+        Article stream;
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(html, url)) {
+            stream = extractor.fromStream(parser, url);
+        }
+        assertEquals(dom.title(), stream.title(), url);
+        assertEquals(dom.publishTime(), stream.publishTime(), url);
+        assertEquals(dom.body(), stream.body(), url);
+        return stream;
+    }
+
+    private static SiteConfig config(String title, String time, String body) {
+        return new SiteConfig("https://news.example.com/", List.of(), List.of(), title, time, body, 1, null);
+    }
+
+    private static Map<String, SiteConfig> bundledConfigs() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, SiteConfig> configs = new HashMap<>();
+        try (Stream<Path> files = Files.list(Path.of(WEBSITE_CONFIG_PATH))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).toList()) {
+                SiteConfig config = mapper.readValue(file.toFile(), SiteConfig.class);
+                configs.put(URI.create(config.baseUrl()).getHost(), config);
+            }
+        }
+        return configs;
+    }
+
+    // markup matching a selector of the simple "tag[attr='value'] > tag" shape the bundled configs use
+    private static String sample(String selector, String text) {
+        String[] steps = selector.split("\\s*>\\s*");
+        String inner = text;
+        for (int i = steps.length - 1; i >= 0; i--) inner = element(steps[i], inner);
+        return inner;
+    }
+
+    // an element matching the first step of a selector around the given markup
+    private static String wrap(String selector, String inner) {
+        return element(selector.split("\\s*>\\s*")[0], inner);
+    }
+
+    private static String element(String step, String inner) {
+        int bracket = step.indexOf('[');
+        String tag = bracket < 0 ? step : step.substring(0, bracket);
+        if (tag.isEmpty()) tag = "div";
+        StringBuilder attrs = new StringBuilder();
+        for (int i = bracket; i >= 0; i = step.indexOf('[', i + 1)) {
+            String attr = step.substring(i + 1, step.indexOf(']', i));
+            String[] kv = attr.split("\\*?=", 2);
+            String value = kv.length > 1 ? kv[1].replace("'", "") : "2025-11-14T10:00:00Z";
+            attrs.append(' ').append(kv[0]).append("='").append(value).append('\'');
+        }
+        return "<" + tag + attrs + ">" + inner + "</" + tag + ">";
+    }
+}
@@ -0,0 +1,45 @@
+package crawler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeenUrlSetTest {
+
+    private static final String URL = "https://news.example.com/a";
+
+    @Test
+    void aClaimedUrlCannotBeClaimedAgainUntilReleased() {
+        SeenUrlSet seen = new SeenUrlSet(1000);
+        assertTrue(seen.claim(URL));
+        assertFalse(seen.claim(URL));
+        assertFalse(seen.contains(URL));
+
+        seen.release(URL);
+        assertFalse(seen.contains(URL));
+        assertTrue(seen.claim(URL));
+    }
+
+    @Test
+    void aCompletedUrlStaysSeenUntilCleared() {
+        SeenUrlSet seen = SeenUrlSet.offHeap(1000);
+        assertTrue(seen.claim(URL));
+        seen.complete(URL);
+        assertTrue(seen.contains(URL));
+        assertFalse(seen.claim(URL));
+        assertEquals(1, seen.size());
+
+        seen.clear();
+        assertFalse(seen.contains(URL));
+        assertEquals(0, seen.size());
+        assertTrue(seen.claim(URL));
+    }
+
+    @Test
+    void clearingKeepsClaims() {
+        SeenUrlSet seen = new SeenUrlSet(1000);
+        assertTrue(seen.claim(URL));
+        seen.clear();
+        assertFalse(seen.claim(URL));
+    }
+}
@@ -0,0 +1,63 @@
+package main.newsmap.geo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountryGazetteerTest {
+
+    // squares named like Natural Earth names them; the US has a small island far from its large mainland
+    private static final CountryGazetteer GAZETTEER = new CountryGazetteer(WorldGeometry.fromFeatures(new JSONArray()
+            .put(feature("Chad", square(10, 15, 4)))
+            .put(feature("United States of America", square(40, -100, 10), square(20, -157, 1)))
+            .put(feature("People's Republic of China", square(35, 105, 8)))
+            .put(feature("Republic of the Congo", square(-1, 15, 2)))
+            .put(feature("Democratic Republic of the Congo", square(-3, 23, 6)))));
+
+    @Test
+    void findsTheFirstCountryNamed() {
+        assertEquals("Chad", nameOf("Floods in Chad as China sends aid"));
+        assertEquals("People's Republic of China", nameOf("China's exports rise, Chad's fall"));
+        assertNull(nameOf("Every hanging chad was counted"));
+        assertNull(nameOf(""));
+    }
+
+    @Test
+    void knowsShortFormsAndPrefersTheLongestName() {
+        assertEquals("United States of America", nameOf("U.S. markets close higher"));
+        assertEquals("United States of America", nameOf("Talks between the United States and others"));
+        assertEquals("Democratic Republic of the Congo", nameOf("Rebels advance in the Democratic Republic of the Congo"));
+        assertEquals("Republic of the Congo", nameOf("Elections in the Republic of the Congo"));
+        assertNull(nameOf("Talks between us and others"));
+    }
+
+    @Test
+    void placesACountryAtTheCentreOfItsLargestPart() {
+        int us = GAZETTEER.find("US");
+        assertEquals(40, GAZETTEER.lat(us), 1e-4);
+        assertEquals(-100, GAZETTEER.lon(us), 1e-4);
+    }
+
+    private static String nameOf(String text) {
+        int f = GAZETTEER.find(text);
+        return f < 0 ? null : GAZETTEER.name(f);
+    }
+
+    private static JSONObject feature(String name, JSONArray... polygons) {
+        JSONArray coordinates = new JSONArray();
+        for (JSONArray ring : polygons) coordinates.put(new JSONArray().put(ring));
+        return new JSONObject()
+                .put("properties", new JSONObject().put("name_en", name))
+                .put("geometry", new JSONObject().put("type", "MultiPolygon").put("coordinates", coordinates));
+    }
+
+    // closed ring around (lat, lon), as GeoJSON writes them
+    private static JSONArray square(double lat, double lon, double half) {
+        JSONArray ring = new JSONArray();
+        double[][] corners = {{-half, -half}, {half, -half}, {half, half}, {-half, half}, {-half, -half}};
+        for (double[] c : corners) ring.put(new JSONArray().put(lon + c[0]).put(lat + c[1]));
+        return ring;
+    }
+}
@@ -0,0 +1,81 @@
+package main.newsmap.geo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorldGeometryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mapReadsWhatWriteToWrote() throws IOException {
+        WorldGeometry written = sample();
+        Path file = dir.resolve("world.bin");
+        written.writeTo(file);
+
+        WorldGeometry mapped = WorldGeometry.map(file);
+        assertEquals(written.featureCount(), mapped.featureCount());
+        assertEquals(written.ringCount(), mapped.ringCount());
+        assertEquals(written.vertexCount(), mapped.vertexCount());
+        assertEquals("Zürich", mapped.name(1));
+        for (int v = 0; v < written.vertexCount(); v++) {
+            assertEquals(written.lat(v), mapped.lat(v));
+            assertEquals(written.lon(v), mapped.lon(v));
+        }
+    }
+
+    @Test
+    void truncatedFilesAreRejectedWithIOException() throws IOException {
+        Path file = dir.resolve("world.bin");
+        sample().writeTo(file);
+        byte[] full = Files.readAllBytes(file);
+
+        Path cut = dir.resolve("cut.bin");
+        for (int length = 0; length < full.length; length++) {
+            Files.write(cut, Arrays.copyOf(full, length));
+            assertThrows(IOException.class, () -> WorldGeometry.map(cut), "length " + length);
+        }
+    }
+
+    @Test
+    void corruptCountsAreRejectedWithIOException() throws IOException {
+        Path file = dir.resolve("world.bin");
+        sample().writeTo(file);
+        byte[] full = Files.readAllBytes(file);
+
+        // featureCount, ringCount, vertexCount follow magic and version
+        for (int field = 2; field < 5; field++) {
+            for (int value : new int[]{-1, 1 << 20, Integer.MAX_VALUE}) {
+                byte[] corrupt = full.clone();
+                ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(field * Integer.BYTES, value);
+                Path bad = dir.resolve("bad.bin");
+                Files.write(bad, corrupt);
+                assertThrows(IOException.class, () -> WorldGeometry.map(bad), "field " + field + " = " + value);
+            }
+        }
+    }
+
+    private static WorldGeometry sample() {
+        return WorldGeometry.fromFeatures(new JSONArray()
+                .put(feature("A", "[[[[0,0],[1,0],[1,1],[0,0]]],[[[5,5],[6,5],[6,6],[5,5]]]]"))
+                .put(feature("Zürich", "[[[[8.5,47.3],[8.6,47.3],[8.6,47.4],[8.5,47.3]]]]")));
+    }
+
+    private static JSONObject feature(String name, String multiPolygon) {
+        return new JSONObject()
+                .put("properties", new JSONObject().put("name_en", name))
+                .put("geometry", new JSONObject().put("type", "MultiPolygon").put("coordinates", new JSONArray(multiPolygon)));
+    }
+}
@@ -0,0 +1,158 @@
+package storage;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArticleCodecTest {
+
+    private static final String URL = "https://news.example.com/a";
+    private static final String ID = DigestUtils.sha256Hex(URL);
+    private static final String PUBLISHED = "2025-11-14 10:00:00";
+    private static final String CRAWLED = "2025-11-14 10:05:00";
+    private static final String PROSE = "The council met on Tuesday to discuss the budget for the coming year. ".repeat(20);
+
+    @Test
+    void deflatingBodyIsStoredDeflated() throws IOException {
+        Article article = article("Title", PROSE, "news.example.com", PUBLISHED, CRAWLED);
+        byte[] record = assertRoundTrip(article);
+        assertTrue(record.length < PROSE.length() / 2, "record of " + record.length + " bytes");
+        assertEquals(PROSE.length(), ArticleView.of(record).bodyLength());
+    }
+
+    @Test
+    void bodyThatDoesNotDeflateIsStoredRaw() throws IOException {
+        String body = "Short. Zürich";
+        byte[] record = assertRoundTrip(article("Title", body, "news.example.com", PUBLISHED, CRAWLED));
+        int bodyBytes = body.getBytes(StandardCharsets.UTF_8).length;
+        // stored length equal to the body length means raw, and the raw bytes end the record
+        String tail = new String(record, record.length - bodyBytes, bodyBytes, StandardCharsets.UTF_8);
+        assertEquals(body, tail);
+        assertEquals(bodyBytes, record[record.length - bodyBytes - 1]);
+        assertEquals(bodyBytes, record[record.length - bodyBytes - 2]);
+    }
+
+    @Test
+    void emptyBodyRoundTrips() throws IOException {
+        assertRoundTrip(article("Title", "", "news.example.com", PUBLISHED, CRAWLED));
+    }
+
+    @Test
+    void unknownTimeOnEitherSideRoundTrips() throws IOException {
+        for (String[] times : new String[][]{{"", CRAWLED}, {PUBLISHED, ""}, {"", ""}, {"not a time", CRAWLED}}) {
+            Article article = article("Title", PROSE, "news.example.com", times[0], times[1]);
+            byte[] record = ArticleCodec.encode(article, 0);
+            ArticleView view = ArticleView.of(record);
+            assertEquals(times[0].equals(PUBLISHED), view.publishedMillis() != ArticleCodec.UNKNOWN_TIME);
+            assertEquals(times[1].equals(CRAWLED), view.crawledMillis() != ArticleCodec.UNKNOWN_TIME);
+
+            SourceDictionary sources = SourceDictionary.inMemory();
+            Article read = ArticleView.of(ArticleCodec.encode(article, sources)).toArticle(sources);
+            assertEquals(times[0].equals(PUBLISHED) ? PUBLISHED : "", read.publishTime());
+            assertEquals(times[1].equals(CRAWLED) ? CRAWLED : "", read.crawledAt());
+        }
+    }
+
+    @Test
+    void crawlTimeBeforePublishTimeRoundTrips() throws IOException {
+        assertRoundTrip(article("Title", PROSE, "news.example.com", CRAWLED, PUBLISHED));
+    }
+
+    @Test
+    void nullStringsAreReadBackEmpty() throws IOException {
+        SourceDictionary sources = SourceDictionary.inMemory();
+        Article article = new Article(ID, null, null, null, null, PUBLISHED, CRAWLED);
+        Article read = ArticleView.of(ArticleCodec.encode(article, sources)).toArticle(sources);
+        assertEquals(new Article(ID, "", "", "", "", PUBLISHED, CRAWLED), read);
+    }
+
+    @Test
+    void versionOneRecordsAreRead() throws IOException {
+        SourceDictionary sources = SourceDictionary.inMemory();
+        int source = sources.id("news.example.com");
+        Article article = article("Title", PROSE, "news.example.com", PUBLISHED, CRAWLED);
+        byte[] v1 = versionOne(article, source);
+
+        ArticleView view = ArticleView.of(v1);
+        assertEquals(article, view.toArticle(sources));
+        assertEquals(v1.length, view.end());
+    }
+
+    @Test
+    void viewReadsRecordsAtAnOffsetInADirectBuffer() throws IOException {
+        SourceDictionary sources = SourceDictionary.inMemory();
+        Article first = article("First", PROSE, "news.example.com", PUBLISHED, CRAWLED);
+        Article second = article("Zweiter Titel – ü", "Raw body", "other.example.com", "", CRAWLED);
+        byte[] a = ArticleCodec.encode(first, sources);
+        byte[] b = versionOne(second, sources.id(second.source()));
+
+        int start = 7;
+        ByteBuffer buf = ByteBuffer.allocateDirect(start + a.length + b.length + 3);
+        buf.position(start);
+        buf.put(a).put(b);
+
+        ArticleView view = new ArticleView();
+        assertEquals(first, view.reset(buf, start).toArticle(sources));
+        int next = view.end();
+        assertEquals(start + a.length, next);
+        // the view is reused for the next record, and the title of a record is readable without its body
+        assertEquals(second.title(), view.reset(buf, next).title());
+        assertEquals(second, view.toArticle(sources));
+        assertEquals(next + b.length, view.end());
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] record = ArticleCodec.encode(article("Title", PROSE, "s", PUBLISHED, CRAWLED), 0);
+        record[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> ArticleView.of(record));
+    }
+
+    private static byte[] assertRoundTrip(Article article) throws IOException {
+        SourceDictionary sources = SourceDictionary.inMemory();
+        byte[] record = ArticleCodec.encode(article, sources);
+        ArticleView view = ArticleView.of(record);
+        assertEquals(article, view.toArticle(sources));
+        assertEquals(record.length, view.end());
+        return record;
+    }
+
+    private static Article article(String title, String body, String source, String published, String crawled) {
+        return new Article(ID, URL, title, body, source, published, crawled);
+    }
+
+    // the record layout before bodies were deflated: no stored length, body always raw
+    private static byte[] versionOne(Article article, int sourceId) {
+        long published = Article.epochMillis(article.publishTime(), ArticleCodec.UNKNOWN_TIME);
+        long crawled = Article.epochMillis(article.crawledAt(), ArticleCodec.UNKNOWN_TIME);
+        long delta = published == ArticleCodec.UNKNOWN_TIME || crawled == ArticleCodec.UNKNOWN_TIME
+                ? crawled : crawled - published;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ArticleCodec.VERSION_RAW_BODY);
+        out.writeBytes(HexFormat.of().parseHex(article.id()));
+        varint(out, ArticleCodec.zigzag(published));
+        varint(out, ArticleCodec.zigzag(delta));
+        varint(out, sourceId);
+        for (String s : new String[]{article.title(), article.url(), article.body()}) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(out, utf8.length);
+            out.writeBytes(utf8);
+        }
+        return out.toByteArray();
+    }
+
+    private static void varint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+}
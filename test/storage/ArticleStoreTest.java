@@ -0,0 +1,164 @@
+package storage;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static global.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArticleStoreTest {
+
+    private static final Duration PARTITION = Duration.ofHours(1);
+    private static final Duration TTL = Duration.ofDays(2);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void storingAnIdAgainReplacesTheArticle() throws IOException {
+        Instant now = Instant.now();
+        Article first = article("https://news.example.com/a", "Old body", now.minus(Duration.ofHours(3)));
+        Article second = article("https://news.example.com/a", "New body", now);
+        Article other = article("https://news.example.com/b", "Other body", now);
+
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            assertTrue(store.put(first));
+            assertTrue(store.put(other));
+            assertTrue(store.put(second, 48.2, 16.4));
+            assertCurrent(store, second, other);
+
+            List<ArticleStore.Hit> located = store.query(now.minus(Duration.ofDays(1)), now.plusSeconds(1), null,
+                    new ArticleStore.GeoBox(48, 16, 49, 17));
+            assertEquals(List.of(second), located.stream().map(ArticleStore.Hit::article).toList());
+        }
+        // the old record is still in its log; reopening must not bring it back
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            assertCurrent(store, second, other);
+        }
+    }
+
+    @Test
+    void readOnlyStoreSeesWhatTheWriterFlushed() throws IOException {
+        Instant now = Instant.now();
+        Article located = article("https://news.example.com/a", "Body", now);
+        Article unlocated = article("https://news.example.com/b", "Body", now);
+
+        try (ArticleStore reader = ArticleStore.openReadOnly(root.resolve("missing"))) {
+            assertEquals(0, reader.size());
+        }
+        try (ArticleStore writer = ArticleStore.open(root, ARTICLE_STORE_PARTITION, ARTICLE_STORE_TTL)) {
+            writer.put(located, 48.2, 16.4);
+            writer.put(unlocated);
+            writer.flush();
+
+            try (ArticleStore reader = ArticleStore.openReadOnly(root)) {
+                List<ArticleStore.Hit> hits = reader.publishedWithin(Duration.ofHours(2), null, null);
+                assertEquals(Set.of(located, unlocated), Set.copyOf(hits.stream().map(ArticleStore.Hit::article).toList()));
+                assertEquals(List.of(located), hits.stream().filter(ArticleStore.Hit::located)
+                        .map(ArticleStore.Hit::article).toList());
+                assertThrows(IllegalStateException.class, () -> reader.put(located));
+
+                // a snapshot: what the writer adds later is not seen
+                writer.put(article("https://news.example.com/c", "Body", now));
+                assertEquals(2, reader.size());
+            }
+        }
+    }
+
+    @Test
+    void tornRecordAtTheEndOfALogIsCutOff() throws IOException {
+        Instant now = Instant.now();
+        Article first = article("https://news.example.com/a", "First body", now);
+        Article second = article("https://news.example.com/b", "Second body", now);
+        Article torn = article("https://news.example.com/c", "Torn body", now);
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            store.put(first, 48.2, 16.4);
+            store.put(second);
+        }
+        Path log = only("articles.log");
+        long complete = Files.size(log);
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            store.put(torn);
+        }
+        // the last record only half reached the disk, while its index entry did
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            ch.truncate(complete + (Files.size(log) - complete) / 2);
+        }
+
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            assertEquals(complete, Files.size(log));
+            assertEquals(2, store.size());
+            assertEquals(first, store.get(first.id()));
+            assertNull(store.get(torn.id()));
+            assertTrue(store.put(torn));
+        }
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            assertEquals(Set.of(first, second, torn), Set.copyOf(store.recent(Duration.ofDays(1))));
+            List<ArticleStore.Hit> located = store.query(now.minus(Duration.ofDays(1)), now.plusSeconds(1), null,
+                    new ArticleStore.GeoBox(48, 16, 49, 17));
+            assertEquals(List.of(first), located.stream().map(ArticleStore.Hit::article).toList());
+        }
+    }
+
+    @Test
+    void missingIndexIsRebuiltFromTheLog() throws IOException {
+        Instant now = Instant.now();
+        Article located = article("https://news.example.com/a", "First body", now);
+        Article other = new Article(DigestUtils.sha256Hex("https://other.example.com/b"), "https://other.example.com/b",
+                "Other", "Other body", "other.example.com", timeStampFormatter.format(now), timeStampFormatter.format(now));
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            store.put(located, -33.9, 151.2);
+            store.put(other);
+        }
+        Path index = only("articles.idx");
+        long indexSize = Files.size(index);
+        Files.delete(index);
+
+        try (ArticleStore store = ArticleStore.open(root, PARTITION, TTL)) {
+            assertEquals(2, store.size());
+            assertEquals(other, store.get(other.id()));
+            Instant from = now.minus(Duration.ofDays(1)), to = now.plusSeconds(1);
+            assertEquals(List.of(other), store.query(from, to, "other.example.com", null).stream()
+                    .map(ArticleStore.Hit::article).toList());
+            ArticleStore.Hit hit = store.query(from, to, null, new ArticleStore.GeoBox(-34, 151, -33, 152)).get(0);
+            assertEquals(located, hit.article());
+            assertEquals(-33.9, hit.lat(), 1e-4);
+        }
+        assertEquals(indexSize, Files.size(index));
+    }
+
+    private Path only(String fileName) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            List<Path> found = files.filter(f -> f.getFileName().toString().equals(fileName)).toList();
+            assertEquals(1, found.size(), fileName + " files: " + found);
+            return found.get(0);
+        }
+    }
+
+    private static void assertCurrent(ArticleStore store, Article latest, Article other) throws IOException {
+        Instant now = Instant.now();
+        assertEquals(2, store.size());
+        assertEquals(latest, store.get(latest.id()));
+        assertEquals(Set.of(latest, other), Set.copyOf(store.recent(Duration.ofDays(1))));
+        List<ArticleStore.Hit> published = store.query(now.minus(Duration.ofDays(1)), now.plusSeconds(1), null, null);
+        assertEquals(2, published.size());
+        assertEquals(Set.of(latest, other), Set.copyOf(published.stream().map(ArticleStore.Hit::article).toList()));
+    }
+
+    static Article article(String url, String body, Instant crawledAt) {
+        return new Article(DigestUtils.sha256Hex(url), url, "Title of " + url, body, "news.example.com",
+                timeStampFormatter.format(crawledAt.minus(Duration.ofMinutes(5))), timeStampFormatter.format(crawledAt));
+    }
+}
@@ -0,0 +1,87 @@
+package storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static global.Constants.PARQUET_ROW_GROUP_ROWS;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads what {@link ParquetBatchWriter} writes with DuckDB, an independent Parquet implementation, so a mistake in
+ * the hand-written pages or footer cannot be hidden by a reader sharing it.
+ */
+class ParquetBatchWriterTest {
+
+    private static final String[] COLUMNS = {"id", "url", "title", "body", "source", "publishTime", "crawledAt"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void duckDbReadsBackEveryRowAndColumn() throws IOException, SQLException {
+        Path file = dir.resolve("articles.parquet");
+        List<Article> written = new ArrayList<>();
+        int rows = 2 * PARQUET_ROW_GROUP_ROWS + 452;
+        try (ParquetBatchWriter writer = new ParquetBatchWriter(file)) {
+            for (int i = 0; i < rows; i++) {
+                Article a = new Article(String.format("%064x", i), "https://news.example.com/" + i,
+                        i % 97 == 0 ? null : "Title " + i + " – Zürich 東京",
+                        "Body of article " + i + ". ".repeat(i % 50),
+                        i % 3 == 0 ? "news.example.com" : i % 3 == 1 ? "other.example.com" : "",
+                        "2025-11-14 10:00:00", "2025-11-14 10:05:" + String.format("%02d", i % 60));
+                writer.append(a);
+                // null fields are written as the empty string
+                written.add(a.title() == null ? new Article(a.id(), a.url(), "", a.body(), a.source(),
+                        a.publishTime(), a.crawledAt()) : a);
+            }
+        }
+
+        try (Connection db = DriverManager.getConnection("jdbc:duckdb:")) {
+            try (PreparedStatement st = db.prepareStatement(
+                    "SELECT column_name, column_type FROM (DESCRIBE SELECT * FROM read_parquet(?))")) {
+                st.setString(1, file.toString());
+                try (ResultSet rs = st.executeQuery()) {
+                    for (String column : COLUMNS) {
+                        assertTrue(rs.next());
+                        assertEquals(column, rs.getString(1));
+                        assertEquals("VARCHAR", rs.getString(2));
+                    }
+                    assertFalse(rs.next());
+                }
+            }
+
+            try (PreparedStatement st = db.prepareStatement(
+                    "SELECT count(DISTINCT row_group_id), max(row_group_num_rows) FROM parquet_metadata(?)")) {
+                st.setString(1, file.toString());
+                try (ResultSet rs = st.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(3, rs.getInt(1));
+                    assertEquals(PARQUET_ROW_GROUP_ROWS, rs.getInt(2));
+                }
+            }
+
+            List<Article> read = new ArrayList<>();
+            try (PreparedStatement st = db.prepareStatement("SELECT " + String.join(", ", COLUMNS)
+                    + " FROM read_parquet(?)")) {
+                st.setString(1, file.toString());
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        read.add(new Article(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                                rs.getString(5), rs.getString(6), rs.getString(7)));
+                    }
+                }
+            }
+            assertEquals(written, read);
+        }
+    }
+}